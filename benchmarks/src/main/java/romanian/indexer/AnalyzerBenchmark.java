@@ -0,0 +1,55 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// words per second through the analyzer used for indexing and searching
+// text with diacritics exercises the ASCII folding, text without them only passes through it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    static final int WORDS = 10_000;
+
+    @Param({"true", "false"})
+    boolean diacritics;
+
+    private Analyzer analyzer;
+    private String text;
+
+    @Setup
+    public void setup() {
+        analyzer = Indexer.getAnalyzer();
+        String generated = new RomanianText(42).text(WORDS);
+        text = diacritics ? generated : RomanianText.withoutDiacritics(generated);
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int analyze() throws IOException {
+        int length = 0;
+        try (TokenStream stream = analyzer.tokenStream(Searcher.queryField, text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                length += termAtt.length();
+            }
+            stream.end();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,100 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// documents per second through the two stages of indexDoc :
+// - extract : Tika text extraction only
+// - index : writing an already extracted text (analysis and IndexWriter), into an in-heap directory
+// extraction runs on the files of docsPath when it exists (the repository docs, pdf and docx),
+// otherwise on generated text files
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// per document logging of the indexer is turned off
+@Fork(value = 1, jvmArgsAppend = "-Dindexer.verbose=false")
+public class IndexingBenchmark {
+
+    @Param({"../docs"})
+    String docsPath;
+
+    @Param({"500"})
+    int wordsPerDocument;
+
+    private SyntheticCorpus corpus;
+    private List<SourceFile> extractFiles;
+    private List<SourceFile> indexFiles;
+    private List<String> texts;
+    private int next;
+
+    private Indexer indexer;
+    private IndexWriter writer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        corpus = new SyntheticCorpus(100, wordsPerDocument, 42);
+        indexer = new Indexer();
+
+        indexFiles = new ArrayList<>();
+        texts = new ArrayList<>();
+        for (Path file : corpus.files) {
+            SourceFile sourceFile = SourceFile.read(file);
+            indexFiles.add(sourceFile);
+            texts.add(indexer.extractText(file));
+        }
+
+        extractFiles = new ArrayList<>();
+        Path docs = Paths.get(docsPath);
+        if (Files.isDirectory(docs)) {
+            try (Stream<Path> paths = Files.list(docs)) {
+                for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                    extractFiles.add(SourceFile.read(file));
+                }
+            }
+        }
+        if (extractFiles.isEmpty()) {
+            extractFiles = indexFiles;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException {
+        writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(Indexer.getAnalyzer()));
+        indexer = new Indexer(writer);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws IOException {
+        writer.close();
+        writer.getDirectory().close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.close();
+    }
+
+    @Benchmark
+    public int extract() throws IOException {
+        SourceFile file = extractFiles.get(next++ % extractFiles.size());
+        return indexer.extractText(file.path).length();
+    }
+
+    @Benchmark
+    public int index() throws IOException {
+        int doc = next++ % indexFiles.size();
+        indexer.writeDoc(indexFiles.get(doc), texts.get(doc));
+        return doc;
+    }
+}
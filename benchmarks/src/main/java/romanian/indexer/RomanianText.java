@@ -0,0 +1,72 @@
+package romanian.indexer;
+
+import java.text.Normalizer;
+import java.util.Random;
+
+// deterministic synthetic Romanian text, so the benchmarks run offline and are comparable between runs
+// words are picked with a skewed distribution, like in real text, where a few words are very frequent
+class RomanianText {
+
+    static final String[] WORDS = {
+            "și", "în", "de", "la", "cu", "pe", "este", "care", "pentru", "din", "sunt", "mai", "fost", "lui",
+            "lupul", "lupii", "lupilor", "cenușiu", "arctic", "zăpadă", "zăpezii", "pădure", "pădurile", "pădurilor",
+            "munte", "munții", "munților", "muntele", "vârf", "vârful", "vârfurile", "altitudine", "altitudinea",
+            "mașină", "mașinuță", "mașinile", "mașinilor", "automobil", "automobile", "automobilelor", "motor",
+            "motorul", "motoarele", "electric", "electrică", "electrice", "baterie", "bateria", "bateriile",
+            "sistem", "sisteme", "sistemul", "sistemelor", "operare", "operarea", "calculator", "calculatoare",
+            "aplicație", "aplicații", "aplicațiile", "telefon", "telefoane", "telefonul", "utilizator", "utilizatorii",
+            "floare", "flori", "florile", "trandafir", "trandafirul", "trandafirii", "petale", "petalele", "frunză",
+            "frunzele", "natură", "naturii", "natura", "animal", "animale", "animalelor", "faună", "fauna", "floră",
+            "ocean", "oceanul", "oceanele", "balenă", "balene", "orca", "rechin", "rechini", "pește", "pești",
+            "barcă", "bărci", "barcuțe", "velier", "iaht", "iahtul", "navă", "nave", "navigație", "vânt", "vântul",
+            "avion", "avionul", "avioane", "zbor", "zborul", "aeroport", "pilot", "piloții", "aripă", "aripile",
+            "film", "filmul", "filme", "filmulețe", "serial", "seriale", "serviciu", "servicii", "serviciul",
+            "companie", "compania", "companii", "companiei", "producător", "producători", "piață", "piața",
+            "funcționează", "funcționare", "funcțiune", "dezvoltare", "dezvoltat", "dezvoltată", "folosește",
+            "folosit", "folosite", "cunoscut", "cunoscută", "cunoscute", "important", "importantă", "importante",
+            "mare", "mari", "mic", "mică", "mici", "nou", "nouă", "noi", "vechi", "primul", "prima", "întâi",
+            "românia", "românesc", "românești", "europa", "european", "europene", "lume", "lumii", "țară", "țări",
+            "oraș", "orașe", "orașul", "stradă", "străzi", "joc", "jocul", "jocuri", "jocurilor", "istorie",
+            "istoria", "istorice", "spațiu", "spațiul", "stele", "planetă", "planete", "călătorie", "călătorii"
+    };
+
+    private final Random random;
+
+    RomanianText(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // a skewed word pick : low indexes are much more frequent
+    String word() {
+        double u = random.nextDouble();
+        return WORDS[(int) (u * u * u * WORDS.length)];
+    }
+
+    String sentence(int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = word();
+            if (i == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            } else {
+                sentence.append(' ');
+            }
+            sentence.append(word);
+        }
+        return sentence.append(". ").toString();
+    }
+
+    String text(int words) {
+        StringBuilder text = new StringBuilder();
+        while (words > 0) {
+            int sentenceWords = Math.min(words, 5 + random.nextInt(15));
+            text.append(sentence(sentenceWords));
+            words -= sentenceWords;
+        }
+        return text.toString();
+    }
+
+    static String withoutDiacritics(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKD).replaceAll("\\p{M}", "");
+    }
+}
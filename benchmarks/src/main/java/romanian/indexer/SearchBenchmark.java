@@ -0,0 +1,79 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Searcher.query against an in-heap index of a generated corpus
+// throughput gives queries per second, sample time gives the latency percentiles (p0.50, p0.99, ...)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// per document logging of the indexer is turned off
+// the result cache is disabled, the queries repeat and would not be executed
+@Fork(value = 1, jvmArgsAppend = {"-Dindexer.verbose=false", "-Dsearcher.cacheSize=0"})
+public class SearchBenchmark {
+
+    @Param({"1000", "10000"})
+    int documents;
+
+    @Param({"300"})
+    int wordsPerDocument;
+
+    private Directory index;
+    private SearcherManager searcherManager;
+    private ExecutorService executor;
+    private Searcher searcher;
+    private String[] queries;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        index = new ByteBuffersDirectory();
+        try (SyntheticCorpus corpus = new SyntheticCorpus(documents, wordsPerDocument, 42);
+             IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(Indexer.getAnalyzer()))) {
+            Indexer indexer = new Indexer(writer);
+            for (Path file : corpus.files) {
+                indexer.writeDoc(SourceFile.read(file), indexer.extractText(file));
+            }
+        }
+
+        searcherManager = new SearcherManager(index, null);
+        executor = Executors.newSingleThreadExecutor();
+        searcher = new Searcher(searcherManager, Indexer.getAnalyzer(), executor);
+
+        // one to three words queries, with the same word distribution as the documents
+        RomanianText text = new RomanianText(7);
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = text.sentence(1 + i % 3).replace(".", "").trim();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        searcherManager.close();
+        index.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public QueryResult query(Cursor cursor) {
+        return searcher.query(queries[cursor.next++ & (queries.length - 1)]);
+    }
+}
@@ -0,0 +1,96 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.*;
+import org.tartarus.snowball.ext.RomanianStemmer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// fused RomanianStemFilter against the three SnowballFilter(Romanian) chain it replaces
+// the input is folded lowercase tokens, what the stemmers get in Indexer.getAnalyzer()
+// setup fails if the two chains don't give exactly the same terms
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StemmingBenchmark {
+
+    static final int TOKENS = 100_000;
+
+    private TokenArrayStream threePassSource;
+    private TokenStream threePass;
+    private TokenArrayStream fusedSource;
+    private TokenStream fused;
+
+    @Setup
+    public void setup() throws IOException {
+        RomanianText text = new RomanianText(42);
+        String[] terms = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            terms[i] = RomanianText.withoutDiacritics(text.word());
+        }
+
+        threePassSource = new TokenArrayStream(terms);
+        threePass = new SnowballFilter(new SnowballFilter(new SnowballFilter(threePassSource,
+                new RomanianStemmer()), new RomanianStemmer()), new RomanianStemmer());
+        fusedSource = new TokenArrayStream(terms);
+        fused = new RomanianStemFilter(fusedSource);
+
+        // also checks every distinct word on its own, not only the frequent ones
+        List<String> expected = terms(threePass);
+        List<String> actual = terms(fused);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("fused stemming differs from three Snowball passes");
+        }
+        String[] vocabulary = new String[RomanianText.WORDS.length];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = RomanianText.withoutDiacritics(RomanianText.WORDS[i]);
+        }
+        TokenStream threePassVocabulary = new SnowballFilter(new SnowballFilter(new SnowballFilter(
+                new TokenArrayStream(vocabulary), new RomanianStemmer()), new RomanianStemmer()), new RomanianStemmer());
+        if (!terms(threePassVocabulary).equals(terms(new RomanianStemFilter(new TokenArrayStream(vocabulary), 0)))) {
+            throw new IllegalStateException("fused stemming differs from three Snowball passes on the vocabulary");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int threeSnowballPasses() throws IOException {
+        return consume(threePass);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int fusedStemFilter() throws IOException {
+        return consume(fused);
+    }
+
+    private static int consume(TokenStream stream) throws IOException {
+        CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+        int length = 0;
+        stream.reset();
+        while (stream.incrementToken()) {
+            length += termAtt.length();
+        }
+        stream.end();
+        return length;
+    }
+
+    private static List<String> terms(TokenStream stream) throws IOException {
+        CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+        List<String> terms = new ArrayList<>();
+        stream.reset();
+        while (stream.incrementToken()) {
+            terms.add(termAtt.toString());
+        }
+        stream.end();
+        return terms;
+    }
+}
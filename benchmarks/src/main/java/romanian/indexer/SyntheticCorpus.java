@@ -0,0 +1,36 @@
+package romanian.indexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// a directory of generated Romanian text files, deleted by close()
+class SyntheticCorpus implements AutoCloseable {
+
+    final Path directory;
+    final List<Path> files = new ArrayList<>();
+
+    SyntheticCorpus(int documents, int wordsPerDocument, long seed) throws IOException {
+        this.directory = Files.createTempDirectory("ro-corpus");
+        RomanianText text = new RomanianText(seed);
+        for (int i = 0; i < documents; i++) {
+            Path file = directory.resolve("doc" + i + ".txt");
+            Files.write(file, text.text(wordsPerDocument).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
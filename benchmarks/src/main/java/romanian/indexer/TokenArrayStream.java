@@ -0,0 +1,32 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+// replays pre-tokenized terms, so filter benchmarks don't measure the tokenizer
+final class TokenArrayStream extends TokenStream {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final String[] tokens;
+    private int next;
+
+    TokenArrayStream(String[] tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (next == tokens.length) {
+            return false;
+        }
+        clearAttributes();
+        termAtt.setEmpty().append(tokens[next++]);
+        return true;
+    }
+
+    @Override
+    public void reset() throws java.io.IOException {
+        super.reset();
+        next = 0;
+    }
+}
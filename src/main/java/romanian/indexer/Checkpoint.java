@@ -0,0 +1,241 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.IndexWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// progress of a run of the Indexer over a docs tree, recorded in the commit user data of the index :
+// the docs tree, the first file not known to be indexed, the counts and the files that failed.
+// the files are walked in sorted order, so a run interrupted by a crash or a kill is resumed
+// from its last checkpoint instead of from the start : the files walked before it are not looked at again.
+// failed files are retried after the walk, and by the next runs, until indexer.maxAttempts
+// the commits are done every indexer.checkpointSeconds, so at most that much work is done again
+class Checkpoint {
+
+    static long intervalSeconds = Long.getLong("indexer.checkpointSeconds", 60);
+    static int maxAttempts = Math.max(1, Integer.getInteger("indexer.maxAttempts", 3));
+
+    static final String ROOT = "indexer.root";
+    // only present while a run is not finished
+    static final String RESUME_FROM = "indexer.resumeFrom";
+    static final String INDEXED = "indexer.indexed";
+    static final String SKIPPED = "indexer.skipped";
+    static final String FAILED = "indexer.failed";
+    // one "attempts <tab> modified <tab> path" line per failed file
+    static final String FAILURES = "indexer.failures";
+    // the commit data is written with every commit : beyond this, only the first failures in walk order are recorded
+    // and the resume point does not move past the first one left out, so the resumed run walks it again
+    private static final int MAX_RECORDED_FAILURES = 1000;
+
+    static class Failure {
+        final int attempts;
+        final long lastModified;
+
+        Failure(int attempts, long lastModified) {
+            this.attempts = attempts;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final IndexWriter[] writers;
+    private final Path root;
+    // the files before this one were processed by the interrupted run, null when starting from the beginning
+    final Path resumeFrom;
+    // counts of the interrupted run
+    private final long indexedBefore;
+    private final long skippedBefore;
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+
+    // the files walked and not processed yet, in walk order
+    private final ConcurrentSkipListSet<Path> pending = new ConcurrentSkipListSet<>(Checkpoint::compare);
+    private volatile Path lastWalked;
+
+    private Checkpoint(IndexWriter[] writers, Path root, Path resumeFrom, long indexedBefore, long skippedBefore) {
+        this.writers = writers;
+        this.root = root;
+        this.resumeFrom = resumeFrom;
+        this.indexedBefore = indexedBefore;
+        this.skippedBefore = skippedBefore;
+    }
+
+    // the state left by the previous run over root, in the last commits of the indexes (shards)
+    // a shard may have committed a later checkpoint than another before the crash : the earliest one is resumed
+    static Checkpoint load(Path root, IndexWriter... writers) {
+        Path resumeFrom = null;
+        long indexed = 0;
+        long skipped = 0;
+        List<Map<String, String>> datas = new ArrayList<>();
+        for (IndexWriter writer : writers) {
+            Map<String, String> data = commitData(writer);
+            if (!root.toString().equals(data.get(ROOT))) {
+                continue;
+            }
+            datas.add(data);
+            String from = data.get(RESUME_FROM);
+            if (from != null && (resumeFrom == null || compare(Paths.get(from), resumeFrom) < 0)) {
+                resumeFrom = Paths.get(from);
+                indexed = Long.parseLong(data.getOrDefault(INDEXED, "0"));
+                skipped = Long.parseLong(data.getOrDefault(SKIPPED, "0"));
+            }
+        }
+        Checkpoint checkpoint = new Checkpoint(writers, root, resumeFrom, indexed, skipped);
+        for (Map<String, String> data : datas) {
+            for (String line : data.getOrDefault(FAILURES, "").split("\n")) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    checkpoint.failures.put(fields[2], new Failure(Integer.parseInt(fields[0]), Long.parseLong(fields[1])));
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    private static Map<String, String> commitData(IndexWriter writer) {
+        Map<String, String> data = new HashMap<>();
+        Iterable<Map.Entry<String, String>> live = writer.getLiveCommitData();
+        if (live != null) {
+            for (Map.Entry<String, String> entry : live) {
+                data.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return data;
+    }
+
+    // the other entries of the commit data (the analyzer version) are kept
+    static void setCommitData(IndexWriter writer, Map<String, String> values, String... removed) {
+        Map<String, String> data = commitData(writer);
+        data.putAll(values);
+        for (String key : removed) {
+            data.remove(key);
+        }
+        writer.setLiveCommitData(data.entrySet());
+    }
+
+    // the order of the walk : directory by directory, names sorted
+    static int compare(Path a, Path b) {
+        Iterator<Path> aNames = a.iterator();
+        Iterator<Path> bNames = b.iterator();
+        while (aNames.hasNext() && bNames.hasNext()) {
+            int compared = aNames.next().compareTo(bNames.next());
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Boolean.compare(aNames.hasNext(), bNames.hasNext());
+    }
+
+    // true when the interrupted run processed the file
+    boolean isDone(Path file) {
+        return resumeFrom != null && compare(file, resumeFrom) < 0;
+    }
+
+    void walked(Path file) {
+        pending.add(file);
+        lastWalked = file;
+    }
+
+    void processed(Path file) {
+        pending.remove(file);
+    }
+
+    // files which failed before the checkpoint, retried by the resumed run
+    List<Path> failedBefore() {
+        List<Path> files = new ArrayList<>();
+        for (Map.Entry<String, Failure> failure : failures.entrySet()) {
+            Path file = Paths.get(failure.getKey());
+            if (failure.getValue().attempts < maxAttempts && isDone(file)) {
+                files.add(file);
+            }
+        }
+        files.sort(Checkpoint::compare);
+        return files;
+    }
+
+    // true when the file failed maxAttempts times and did not change since
+    boolean gaveUp(SourceFile file) {
+        Failure failure = failures.get(file.path.toString());
+        return failure != null && failure.attempts >= maxAttempts && failure.lastModified == file.lastModified;
+    }
+
+    void succeeded(Path file) {
+        failures.remove(file.toString());
+    }
+
+    // the number of times the file failed, a changed file starts again from 1
+    int failed(Path file, long lastModified) {
+        Failure previous = failures.get(file.toString());
+        int attempts = previous != null && previous.lastModified == lastModified ? previous.attempts + 1 : 1;
+        failures.put(file.toString(), new Failure(attempts, lastModified));
+        return attempts;
+    }
+
+    int failureCount() {
+        return failures.size();
+    }
+
+    long indexedBefore() {
+        return indexedBefore;
+    }
+
+    long skippedBefore() {
+        return skippedBefore;
+    }
+
+    // commit the documents written so far with the progress, finished once the walk and the retries are done
+    // the documents of the files processed before the first pending one are in the commit, since they were
+    // written before it started : a resumed run starts from that file
+    synchronized void commit(long indexed, long skipped, long failed, boolean finished) throws IOException {
+        Path resume = null;
+        if (!finished) {
+            // read before the pending files, the files walked after it are after it in walk order
+            Path walked = lastWalked;
+            Path first = pending.isEmpty() ? null : pending.ceiling(root);
+            resume = first != null ? first : walked != null ? walked : root;
+        }
+
+        Map<String, String> data = new HashMap<>();
+        data.put(ROOT, root.toString());
+        data.put(INDEXED, String.valueOf(indexedBefore + indexed));
+        data.put(SKIPPED, String.valueOf(skippedBefore + skipped));
+        data.put(FAILED, String.valueOf(failed));
+        List<String> recorded = new ArrayList<>(failures.keySet());
+        if (recorded.size() > MAX_RECORDED_FAILURES) {
+            recorded.sort((a, b) -> compare(Paths.get(a), Paths.get(b)));
+            Path firstLeftOut = Paths.get(recorded.get(MAX_RECORDED_FAILURES));
+            if (resume != null && compare(firstLeftOut, resume) < 0) {
+                resume = firstLeftOut;
+            }
+            recorded = recorded.subList(0, MAX_RECORDED_FAILURES);
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String path : recorded) {
+            Failure failure = failures.get(path);
+            // succeeded meanwhile
+            if (failure != null) {
+                lines.append(failure.attempts).append('\t').append(failure.lastModified).append('\t').append(path).append('\n');
+            }
+        }
+        data.put(FAILURES, lines.toString());
+        if (resume != null) {
+            data.put(RESUME_FROM, resume.toString());
+        }
+
+        for (IndexWriter writer : writers) {
+            if (resume != null) {
+                setCommitData(writer, data);
+            } else {
+                setCommitData(writer, data, RESUME_FROM);
+            }
+            writer.commit();
+        }
+        Metrics.counter("indexer.checkpoints").increment();
+        if (Indexer.verbose && resume != null) {
+            System.out.println("--- checkpoint : " + (indexedBefore + indexed) + " files indexed, resuming from " + resume);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.*;
+
+import java.io.IOException;
+
+// merge policy of the bulk load : no merge while the documents are added, so the indexing threads
+// don't compete with merges rewriting the same data several times,
+// then IndexWriter.forceMerge merges the flushed segments once, with the delegate's selection.
+// once the bulk load is over (the watch mode goes on with the same writer), the delegate merges again
+class DeferredMergePolicy extends FilterMergePolicy {
+
+    private volatile boolean deferring = true;
+
+    DeferredMergePolicy(MergePolicy delegate) {
+        super(delegate);
+    }
+
+    // the merges triggered by flushes and commits
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+        return deferring ? null : super.findMerges(mergeTrigger, segmentInfos, mergeContext);
+    }
+
+    void stopDeferring() {
+        deferring = false;
+    }
+}
@@ -0,0 +1,253 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.ro.RomanianAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// relevance and latency of the queries of Queries-IR.txt, against their ground truth
+// the docs are indexed in memory once per analyzer (the custom one and RomanianAnalyzer),
+// so both are compared on the same text in a single run
+//
+// Queries-IR.txt (UTF-16) is made of blocks separated by dashes :
+//   query:                   alternative forms are separated by '/', e.g. munți/munte, each one is a query
+//   <observed hits, notes>   ignored
+//   Ground truth:
+//   Doc7 Nvidia.docx ...     relevant file names, anything after the extension is a comment
+public class Evaluation {
+
+    static int k = Integer.getInteger("eval.k", 10);
+    // each query is executed this many times for the latency percentiles
+    static int repeat = Integer.getInteger("eval.repeat", 20);
+
+    private static final Pattern DOCUMENT = Pattern.compile("^(Doc\\d+ .*?\\.(?:pdf|docx|txt))");
+
+    // a query with its relevant file names
+    static class Judgement {
+        final String query;
+        final Set<String> relevant;
+
+        Judgement(String query, Set<String> relevant) {
+            this.query = query;
+            this.relevant = relevant;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path queriesFile = Paths.get(args.length > 0 ? args[0] : "Queries-IR.txt");
+        Path docDir = Paths.get(args.length > 1 ? args[1] : "docs");
+
+        // the in memory indexes are written quietly, unless indexer.verbose is set
+        if (System.getProperty("indexer.verbose") == null) {
+            Indexer.verbose = false;
+        }
+        List<Judgement> judgements = parseJudgements(queriesFile);
+        System.out.println("--- " + judgements.size() + " judged queries in " + queriesFile);
+
+        // extract the text once, it is indexed with every analyzer
+        Map<SourceFile, String> texts = new LinkedHashMap<>();
+        Indexer extractor = new Indexer();
+        extractor.openTextCache();
+        try (Stream<Path> paths = Files.walk(docDir)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                SourceFile file = SourceFile.read(path);
+                texts.put(file, extractor.extractText(file));
+            }
+        }
+        Set<String> corpus = new HashSet<>();
+        for (SourceFile file : texts.keySet()) {
+            corpus.add(file.path.getFileName().toString());
+        }
+        for (Judgement judgement : judgements) {
+            for (String relevant : judgement.relevant) {
+                if (!corpus.contains(relevant)) {
+                    System.out.println("WARNING : ground truth of '" + judgement.query + "' names " + relevant + ", which is not in " + docDir);
+                }
+            }
+        }
+
+        Map<String, Analyzer> analyzers = new LinkedHashMap<>();
+        analyzers.put("custom analyzer", Indexer.getAnalyzer());
+        analyzers.put("RomanianAnalyzer", new RomanianAnalyzer());
+        for (Map.Entry<String, Analyzer> analyzer : analyzers.entrySet()) {
+            System.out.println();
+            System.out.println("=== " + analyzer.getKey());
+            evaluate(analyzer.getValue(), texts, judgements);
+        }
+    }
+
+    static List<Judgement> parseJudgements(Path queriesFile) throws IOException {
+        List<Judgement> judgements = new ArrayList<>();
+        List<String> block = new ArrayList<>();
+        for (String line : Files.readAllLines(queriesFile, StandardCharsets.UTF_16)) {
+            if (line.trim().matches("-{3,}")) {
+                parseBlock(block, judgements);
+                block.clear();
+            } else {
+                block.add(line.trim());
+            }
+        }
+        parseBlock(block, judgements);
+        return judgements;
+    }
+
+    private static void parseBlock(List<String> block, List<Judgement> judgements) {
+        String query = null;
+        Set<String> relevant = new LinkedHashSet<>();
+        boolean groundTruth = false;
+        for (String line : block) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (query == null) {
+                query = line.endsWith(":") ? line.substring(0, line.length() - 1) : line;
+            } else if (line.startsWith("Ground truth")) {
+                groundTruth = true;
+            } else if (groundTruth) {
+                Matcher matcher = DOCUMENT.matcher(line);
+                if (matcher.find()) {
+                    relevant.add(matcher.group(1));
+                }
+            }
+        }
+        // queries without ground truth can't be evaluated
+        if (query == null || relevant.isEmpty()) {
+            return;
+        }
+        for (String form : query.split("/")) {
+            if (!form.trim().isEmpty()) {
+                judgements.add(new Judgement(form.trim(), relevant));
+            }
+        }
+    }
+
+    static void evaluate(Analyzer analyzer, Map<SourceFile, String> texts, List<Judgement> judgements) throws IOException {
+        try (Directory index = new ByteBuffersDirectory()) {
+            try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
+                Indexer indexer = new Indexer(writer);
+                for (Map.Entry<SourceFile, String> text : texts.entrySet()) {
+                    indexer.writeDoc(text.getKey(), text.getValue());
+                }
+            }
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try (SearcherManager searcherManager = new SearcherManager(index, null)) {
+                // the queries are repeated for the latencies, they must not be answered by the result cache
+                Searcher searcher = new Searcher(searcherManager, analyzer, executor, 0);
+                System.out.println(String.format("%-22s %6s %6s %6s %6s %9s %9s  %s",
+                        "query", "P", "R", "AP", "nDCG", "p50 ms", "p99 ms", "processed"));
+
+                double precisionSum = 0, recallSum = 0, apSum = 0, ndcgSum = 0;
+                List<QueryResult> all = new ArrayList<>();
+                for (Judgement judgement : judgements) {
+                    List<QueryResult> runs = new ArrayList<>();
+                    for (int i = 0; i < Math.max(1, repeat); i++) {
+                        runs.add(searcher.query(judgement.query, k));
+                    }
+                    all.addAll(runs);
+
+                    List<String> hits = new ArrayList<>();
+                    for (String path : runs.get(0).paths) {
+                        hits.add(Paths.get(path).getFileName().toString());
+                    }
+                    double precision = precision(hits, judgement.relevant);
+                    double recall = recall(hits, judgement.relevant);
+                    double ap = averagePrecision(hits, judgement.relevant);
+                    double ndcg = ndcg(hits, judgement.relevant);
+                    precisionSum += precision;
+                    recallSum += recall;
+                    apSum += ap;
+                    ndcgSum += ndcg;
+
+                    long[] latencies = sortedLatencies(runs);
+                    String processed = runs.get(0).query == null ? "(parse error)" : runs.get(0).query.toString(Searcher.queryField);
+                    System.out.println(String.format("%-22s %6.3f %6.3f %6.3f %6.3f %9.3f %9.3f  %s",
+                            judgement.query, precision, recall, ap, ndcg,
+                            Searcher.percentile(latencies, 0.50) / 1e6, Searcher.percentile(latencies, 0.99) / 1e6, processed));
+                }
+
+                int n = judgements.size();
+                System.out.println(String.format("mean precision %.3f, mean recall %.3f, MAP %.3f, mean nDCG@%d %.3f",
+                        precisionSum / n, recallSum / n, apSum / n, k, ndcgSum / n));
+                System.out.println(Searcher.latencySummary(all));
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static long[] sortedLatencies(List<QueryResult> runs) {
+        long[] latencies = new long[runs.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = runs.get(i).latencyNanos;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    // fraction of the hits that are relevant, 0 when there are no hits
+    static double precision(List<String> hits, Set<String> relevant) {
+        return hits.isEmpty() ? 0 : (double) relevantHits(hits, relevant) / hits.size();
+    }
+
+    static double recall(List<String> hits, Set<String> relevant) {
+        return (double) relevantHits(hits, relevant) / relevant.size();
+    }
+
+    private static int relevantHits(List<String> hits, Set<String> relevant) {
+        int count = 0;
+        for (String hit : hits) {
+            if (relevant.contains(hit)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // mean of the precisions at the rank of each relevant document, missing ones count as 0
+    static double averagePrecision(List<String> hits, Set<String> relevant) {
+        double sum = 0;
+        int found = 0;
+        for (int rank = 1; rank <= hits.size(); rank++) {
+            if (relevant.contains(hits.get(rank - 1))) {
+                found++;
+                sum += (double) found / rank;
+            }
+        }
+        return sum / relevant.size();
+    }
+
+    // binary relevance nDCG, over the returned hits
+    static double ndcg(List<String> hits, Set<String> relevant) {
+        double dcg = 0;
+        for (int rank = 1; rank <= hits.size(); rank++) {
+            if (relevant.contains(hits.get(rank - 1))) {
+                dcg += 1 / log2(rank + 1);
+            }
+        }
+        double idcg = 0;
+        for (int rank = 1; rank <= Math.min(relevant.size(), k); rank++) {
+            idcg += 1 / log2(rank + 1);
+        }
+        return dcg / idcg;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
@@ -0,0 +1,102 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// counts the matching files per type, modification year and size range, from the doc values,
+// while the same search collects the top hits : the matching documents are visited once
+class FacetCounter implements Collector {
+
+    private static final long KB = 1024;
+    private static final long[] SIZE_LIMITS = {10 * KB, 100 * KB, KB * KB, 10 * KB * KB};
+    private static final String[] SIZE_RANGES = {"<10KB", "10KB-100KB", "100KB-1MB", "1MB-10MB", ">=10MB"};
+
+    // the types are counted by ordinal, resolved to their names once the search is done
+    private final List<SortedDocValues> typeValues = new ArrayList<>();
+    private final List<int[]> typeCounts = new ArrayList<>();
+    private final Map<Integer, Long> years = new TreeMap<>();
+    private final long[] sizes = new long[SIZE_RANGES.length];
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        LeafReader reader = context.reader();
+        // null in segments written before these fields were indexed
+        SortedDocValues types = reader.getSortedDocValues("filetype");
+        NumericDocValues modified = reader.getNumericDocValues("modified");
+        NumericDocValues size = reader.getNumericDocValues("size");
+        int[] counts = types == null ? null : new int[types.getValueCount()];
+        if (types != null) {
+            typeValues.add(types);
+            typeCounts.add(counts);
+        }
+        return new LeafCollector() {
+            @Override
+            public void setScorer(Scorable scorer) {
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                if (types != null && types.advanceExact(doc)) {
+                    counts[types.ordValue()]++;
+                }
+                if (modified != null && modified.advanceExact(doc)) {
+                    int year = Instant.ofEpochMilli(modified.longValue()).atZone(ZoneOffset.UTC).getYear();
+                    years.merge(year, 1L, Long::sum);
+                }
+                if (size != null && size.advanceExact(doc)) {
+                    sizes[sizeRange(size.longValue())]++;
+                }
+            }
+        };
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    private static int sizeRange(long size) {
+        int range = 0;
+        while (range < SIZE_LIMITS.length && size >= SIZE_LIMITS[range]) {
+            range++;
+        }
+        return range;
+    }
+
+    // facet -> value -> number of matching files, the empty values are left out
+    Map<String, Map<String, Long>> counts() throws IOException {
+        Map<String, Long> types = new TreeMap<>();
+        for (int leaf = 0; leaf < typeValues.size(); leaf++) {
+            int[] counts = typeCounts.get(leaf);
+            for (int ord = 0; ord < counts.length; ord++) {
+                if (counts[ord] > 0) {
+                    types.merge(typeValues.get(leaf).lookupOrd(ord).utf8ToString(), (long) counts[ord], Long::sum);
+                }
+            }
+        }
+        Map<String, Long> yearCounts = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> year : years.entrySet()) {
+            yearCounts.put(year.getKey().toString(), year.getValue());
+        }
+        Map<String, Long> sizeCounts = new LinkedHashMap<>();
+        for (int range = 0; range < sizes.length; range++) {
+            if (sizes[range] > 0) {
+                sizeCounts.put(SIZE_RANGES[range], sizes[range]);
+            }
+        }
+
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        facets.put("type", types);
+        facets.put("year", yearCounts);
+        facets.put("size", sizeCounts);
+        return facets;
+    }
+}
@@ -0,0 +1,73 @@
+package romanian.indexer;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// restrictions of a search on the file type, modification time and size, and whether to count the facets
+// they are FILTER clauses : they don't change the scores, and IndexSearcher's query cache keeps
+// the matching documents of the ones used often
+class Filters {
+
+    static final Filters NONE = new Filters(Collections.emptySet(), Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, false);
+
+    // empty for all the types
+    final Set<String> types;
+    // bounds are inclusive, in milliseconds since the epoch and in bytes
+    final long modifiedFrom;
+    final long modifiedTo;
+    final long minSize;
+    final long maxSize;
+    // count the matching files per type, year and size range, see FacetCounter
+    final boolean facets;
+
+    Filters(Set<String> types, long modifiedFrom, long modifiedTo, long minSize, long maxSize, boolean facets) {
+        this.types = types;
+        this.modifiedFrom = modifiedFrom;
+        this.modifiedTo = modifiedTo;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.facets = facets;
+    }
+
+    boolean restricts() {
+        return !types.isEmpty() || modifiedFrom != Long.MIN_VALUE || modifiedTo != Long.MAX_VALUE
+                || minSize != Long.MIN_VALUE || maxSize != Long.MAX_VALUE;
+    }
+
+    // the query, restricted to the matching files
+    Query apply(Query query) {
+        if (!restricts()) {
+            return query;
+        }
+        BooleanQuery.Builder filtered = new BooleanQuery.Builder().add(query, BooleanClause.Occur.MUST);
+        if (!types.isEmpty()) {
+            List<BytesRef> terms = new ArrayList<>();
+            for (String type : types) {
+                terms.add(new BytesRef(type));
+            }
+            filtered.add(new TermInSetQuery("filetype", terms), BooleanClause.Occur.FILTER);
+        }
+        if (modifiedFrom != Long.MIN_VALUE || modifiedTo != Long.MAX_VALUE) {
+            // only the doc values : the incremental mode updates them alone for the files touched without changes,
+            // the point and the stored copies keep the time of the indexing, like the facets they read the doc values
+            filtered.add(NumericDocValuesField.newSlowRangeQuery("modified", modifiedFrom, modifiedTo), BooleanClause.Occur.FILTER);
+        }
+        if (minSize != Long.MIN_VALUE || maxSize != Long.MAX_VALUE) {
+            filtered.add(range("size", minSize, maxSize), BooleanClause.Occur.FILTER);
+        }
+        return filtered.build();
+    }
+
+    // the points find the files in the range, the doc values check the few files matched by a selective text query
+    private static Query range(String field, long from, long to) {
+        return new IndexOrDocValuesQuery(LongPoint.newRangeQuery(field, from, to),
+                NumericDocValuesField.newSlowRangeQuery(field, from, to));
+    }
+}
@@ -0,0 +1,70 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+// opens the index directory with the implementation chosen by index.directory :
+// - fs   : FSDirectory.open, Lucene picks the best one for the platform (default)
+// - mmap : MMapDirectory, the files whose extension is listed in index.preload are loaded in memory when opened
+//          (default : term dictionary, postings, doc values and norms, and compound files)
+// - nio  : NIOFSDirectory, positional reads through FileChannel
+// - heap : the latest commit is copied in a ByteBuffersDirectory, for small and hot indexes
+//          it is a snapshot, later commits of the indexer are not seen, and it can only be read
+class IndexDirectories {
+
+    static String mode = System.getProperty("index.directory", "fs");
+    static String preload = System.getProperty("index.preload", "tim,tip,doc,dvd,dvm,nvd,nvm,cfs,cfe");
+
+    static Directory open(Path path, boolean readOnly) throws IOException {
+        switch (mode) {
+            case "fs":
+                return FSDirectory.open(path);
+            case "mmap":
+                return openMMap(path);
+            case "nio":
+                return new NIOFSDirectory(path);
+            case "heap":
+                if (!readOnly) {
+                    System.out.println("WARNING : the heap directory can not be written, using fs instead");
+                    return FSDirectory.open(path);
+                }
+                return copyToHeap(path);
+            default:
+                throw new IllegalArgumentException("unknown index.directory '" + mode + "', expected fs, mmap, nio or heap");
+        }
+    }
+
+    private static Directory openMMap(Path path) throws IOException {
+        Set<String> extensions = new HashSet<>();
+        for (String extension : preload.split(",")) {
+            if (!extension.trim().isEmpty()) {
+                extensions.add(extension.trim());
+            }
+        }
+        if (extensions.isEmpty()) {
+            return new MMapDirectory(path);
+        }
+        // both directories map the same files, the extension decides which one opens a file
+        MMapDirectory preloaded = new MMapDirectory(path);
+        preloaded.setPreload(true);
+        return new FileSwitchDirectory(extensions, preloaded, new MMapDirectory(path), true);
+    }
+
+    private static Directory copyToHeap(Path path) throws IOException {
+        ByteBuffersDirectory heap = new ByteBuffersDirectory();
+        try (Directory source = FSDirectory.open(path)) {
+            SegmentInfos commit = SegmentInfos.readLatestCommit(source);
+            long bytes = 0;
+            for (String file : commit.files(true)) {
+                heap.copyFrom(source, file, file, IOContext.READONCE);
+                bytes += source.fileLength(file);
+            }
+            System.out.println("--- copied " + (bytes / 1024) + " KB of " + commit.getSegmentsFileName() + " in heap");
+        }
+        return heap;
+    }
+}
@@ -0,0 +1,93 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+// touches the term dictionaries, the start of every postings list, the norms and the doc values
+// of each segment before a searcher is handed out, so the first queries after a deploy
+// don't pay for the page faults
+// segments already warmed by a previous refresh are skipped
+class IndexWarmer extends SearcherFactory {
+
+    private final Set<Object> warmed = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    @Override
+    public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+        warm(reader);
+        return super.newSearcher(reader, previousReader);
+    }
+
+    void warm(IndexReader reader) throws IOException {
+        long start = System.nanoTime();
+        long terms = 0;
+        int segments = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+            if (cacheHelper != null && !warmed.add(cacheHelper.getKey())) {
+                continue;
+            }
+            terms += warm(leaf.reader());
+            segments++;
+        }
+        if (segments > 0) {
+            System.out.println(String.format("--- warmed %d segments, %d terms in %d ms",
+                    segments, terms, (System.nanoTime() - start) / 1_000_000));
+        }
+    }
+
+    static long warm(LeafReader reader) throws IOException {
+        long count = 0;
+        for (FieldInfo field : reader.getFieldInfos()) {
+            if (field.getIndexOptions() != IndexOptions.NONE) {
+                Terms terms = reader.terms(field.name);
+                if (terms != null) {
+                    TermsEnum termsEnum = terms.iterator();
+                    PostingsEnum postings = null;
+                    while (termsEnum.next() != null) {
+                        postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                        postings.nextDoc();
+                        count++;
+                    }
+                }
+                if (field.hasNorms()) {
+                    exhaust(reader.getNormValues(field.name));
+                }
+            }
+            switch (field.getDocValuesType()) {
+                case NUMERIC:
+                    exhaust(reader.getNumericDocValues(field.name));
+                    break;
+                case SORTED:
+                    exhaust(reader.getSortedDocValues(field.name));
+                    break;
+                case SORTED_SET:
+                    exhaust(reader.getSortedSetDocValues(field.name));
+                    break;
+                case SORTED_NUMERIC:
+                    exhaust(reader.getSortedNumericDocValues(field.name));
+                    break;
+                case BINARY:
+                    exhaust(reader.getBinaryDocValues(field.name));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private static void exhaust(DocIdSetIterator iterator) throws IOException {
+        if (iterator != null) {
+            while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                // moving through the values reads them
+            }
+        }
+    }
+}
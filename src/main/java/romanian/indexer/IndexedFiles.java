@@ -0,0 +1,120 @@
+package romanian.indexer;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.*;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// path -> (modified, size, hash) of the files already in the index
+// used by the incremental mode to skip unchanged files and to find deleted ones
+class IndexedFiles {
+
+    static class Entry {
+        final long lastModified;
+        final long size;
+        final String hash;
+
+        Entry(long lastModified, long size, String hash) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    // paths seen by the current run, the others have been deleted from disk
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    private IndexedFiles(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    // the stored fields of the documents written before the doc values of the path
+    private static final Set<String> PATH_AND_HASH = new HashSet<>(Arrays.asList("path", "hash"));
+
+    // read the state from the doc values of the indexes (shards) being written, the stored fields are not decompressed
+    // but for the documents written before the doc values of the path
+    static IndexedFiles load(IndexWriter... writers) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        for (IndexWriter writer : writers) {
+            load(writer, entries);
+        }
+        return new IndexedFiles(entries);
+    }
+
+    private static void load(IndexWriter writer, Map<String, Entry> entries) throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            for (LeafReaderContext leaf : reader.leaves()) {
+                LeafReader leafReader = leaf.reader();
+                Bits liveDocs = leafReader.getLiveDocs();
+                // null in segments written before the doc values were added
+                NumericDocValues modified = leafReader.getNumericDocValues("modified");
+                NumericDocValues size = leafReader.getNumericDocValues("size");
+                SortedDocValues paths = leafReader.getSortedDocValues("path");
+                BinaryDocValues hashes = leafReader.getBinaryDocValues("hash");
+                for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    // the stored path of the documents written before its doc values, merged with later ones or not,
+                    // and no path at all for the passages of the passages mode, which store nothing
+                    String path;
+                    String hash = null;
+                    if (paths != null && paths.advanceExact(doc)) {
+                        path = paths.binaryValue().utf8ToString();
+                    } else {
+                        Document document = leafReader.document(doc, PATH_AND_HASH);
+                        path = document.get("path");
+                        hash = document.get("hash");
+                    }
+                    if (path == null) {
+                        continue;
+                    }
+                    // documents written before the incremental mode have no doc values and are always re-indexed
+                    long lastModified = modified != null && modified.advanceExact(doc) ? modified.longValue() : -1;
+                    long length = size != null && size.advanceExact(doc) ? size.longValue() : -1;
+                    // documents written without the incremental mode or the text cache have no hash, they are parsed again when touched
+                    if (hashes != null && hashes.advanceExact(doc)) {
+                        hash = hashes.binaryValue().utf8ToString();
+                    }
+                    entries.put(path, new Entry(lastModified, length, hash));
+                }
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void markSeen(Path file) {
+        seen.add(file.toString());
+    }
+
+    // stat only check
+    boolean isUnchanged(SourceFile file) {
+        Entry entry = entries.get(file.path.toString());
+        return entry != null && entry.lastModified == file.lastModified && entry.size == file.size;
+    }
+
+    // the file was touched, but its bytes are the same
+    boolean hasSameContent(SourceFile file) throws IOException {
+        Entry entry = entries.get(file.path.toString());
+        return entry != null && entry.hash != null && entry.hash.equals(file.hash());
+    }
+
+    // indexed paths that were not seen during this run
+    List<String> unseen() {
+        List<String> deleted = new ArrayList<>();
+        for (String path : entries.keySet()) {
+            if (!seen.contains(path)) {
+                deleted.add(path);
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,547 @@
+package romanian.indexer;
+
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.util.BytesRef;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParsingReader;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Indexer {
+
+    // one writer per shard, a single one when the index is not sharded
+    // IndexWriter is thread safe, the pipeline workers share them
+    private IndexWriter[] indexWriters;
+
+    Indexer() {
+    }
+
+    // index into already opened writers, one per shard
+    Indexer(IndexWriter... indexWriters) {
+        this.indexWriters = indexWriters;
+    }
+
+    public static void main(String[] args) {
+
+
+        String indexPath = "index";
+        String docsPath = "docs";
+
+        Indexer indexer = new Indexer();
+        Date start = new Date();
+        Metrics.start();
+
+
+        //open doc directory
+        final Path docDir = Paths.get(docsPath);
+        if (!Files.isReadable(docDir)) {
+            System.out.println("ERROR : Document directory '" + docDir.toAbsolutePath()+ "' does not exist or is not readable, please check the path");
+            System.exit(1);
+        }
+
+        try{
+            // Create an index writer per shard
+            // index directory
+            Path indexDir = Paths.get(indexPath);
+            // analyzer, timed for the metrics
+            Analyzer analyzer = new TimedAnalyzer(Suggestions.wrap(getAnalyzer()));
+
+            int shards = Math.max(1, Shards.count);
+            indexer.indexWriters = new IndexWriter[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                Path shardDir = shards == 1 ? indexDir : Shards.path(indexDir, shard);
+                Directory index = IndexDirectories.open(shardDir, false);
+                // adding documents analyzed differently would make the index inconsistent
+                String indexedVersion = RomanianFoldingAnalyzer.indexedVersion(index);
+                if (indexedVersion != null && !indexedVersion.equals(RomanianFoldingAnalyzer.VERSION)) {
+                    System.out.println("ERROR : " + shardDir + " was analyzed by " + indexedVersion + ", this Indexer analyzes with "
+                            + RomanianFoldingAnalyzer.VERSION + ". Remove it to rebuild it.");
+                    System.exit(1);
+                }
+
+                // indexer config
+                IndexWriterConfig config = WriterMetrics.attach(new IndexWriterConfig(analyzer));
+                config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+                // the workers of the shared pool write to the shard of each file : the documents they buffer in this writer
+                // share ramBufferMb, and are flushed as segments when they reach it together
+                config.setRAMBufferSizeMB(ramBufferMb);
+                if (!compoundFiles) {
+                    config.setUseCompoundFile(false);
+                    config.getMergePolicy().setNoCFSRatio(0);
+                }
+                if (bulk) {
+                    // no merges until the forceMerge at the end of the bulk load
+                    config.setMergePolicy(new DeferredMergePolicy(config.getMergePolicy()));
+                }
+
+                try {
+                    indexer.indexWriters[shard] = new IndexWriter(index, config);
+                } catch (LockObtainFailedException ex) {
+                    // two writers would corrupt the index, the second process stops
+                    System.out.println("ERROR : " + shardDir + " is being written by another Indexer process (" + ex.getMessage() + ")");
+                    System.exit(1);
+                }
+                RomanianFoldingAnalyzer.record(indexer.indexWriters[shard]);
+            }
+            if (shards > 1) {
+                System.out.println("--- writing " + shards + " shards in " + indexDir);
+            }
+            if (storeContent && passageChars > 0) {
+                System.out.println("WARNING : the text is not stored in passages mode (indexer.passageChars), the searches have no snippets");
+            }
+            if (bulk) {
+                indexer.appendOnly = true;
+                for (IndexWriter indexWriter : indexer.indexWriters) {
+                    indexer.appendOnly &= indexWriter.getDocStats().maxDoc == 0;
+                }
+                System.out.println("--- bulk load with a " + ramBufferMb + " MB buffer"
+                        + (indexer.appendOnly ? ", adding the documents" : ", the index is not empty, updating the documents"));
+            }
+
+            indexer.openTextCache();
+            indexer.indexDocs(docDir);
+            if (indexer.textCache != null) {
+                indexer.textCache.report();
+            }
+            if (bulk && forceMergeSegments > 0) {
+                indexer.forceMerge();
+            }
+            if (Suggestions.enabled) {
+                Suggestions.build(indexDir, indexer.indexWriters);
+            }
+            if (Watcher.enabled) {
+                indexer.watch(docDir);
+                // with the words of the files changed while watching
+                if (Suggestions.enabled) {
+                    Suggestions.build(indexDir, indexer.indexWriters);
+                }
+            }
+
+            for (IndexWriter indexWriter : indexer.indexWriters) {
+                indexWriter.close();
+            }
+            WriterMetrics.report();
+            if (shards > 1 && Shards.merge) {
+                Shards.merge(indexDir, analyzer);
+            }
+
+        }
+        catch (IOException ex){
+            System.out.println(ex);
+        }
+
+        Date end = new Date();
+        System.out.println("--- total time : " + (end.getTime() - start.getTime()) + " total milliseconds");
+        Metrics.dump();
+    }
+
+    // the analyzer of the content field, the Searcher uses the same one for the queries
+    static Analyzer getAnalyzer()  {
+        return new RomanianFoldingAnalyzer();
+    }
+
+    // print every indexed file
+    static boolean verbose = Boolean.parseBoolean(System.getProperty("indexer.verbose", "true"));
+
+    // number of extraction workers and capacity of the work queue feeding them
+    static int threads = Integer.getInteger("indexer.threads", Runtime.getRuntime().availableProcessors());
+    static int queueSize = Integer.getInteger("indexer.queueSize", 4 * threads);
+
+    // the writer of the shard of a path
+    private IndexWriter writerFor(String path) {
+        return indexWriters.length == 1 ? indexWriters[0] : indexWriters[Shards.of(path, indexWriters.length)];
+    }
+
+    // incremental mode : skip files that did not change since the last run and remove deleted ones
+    // the watch mode starts from an incremental run, so restarting it does not parse everything again
+    static boolean incremental = Boolean.getBoolean("indexer.incremental") || Watcher.enabled;
+    // state of the files already in the index, only loaded in incremental mode
+    private IndexedFiles indexedFiles;
+
+    void indexDocs(Path path) throws IOException {
+        if (incremental) {
+            indexedFiles = IndexedFiles.load(indexWriters);
+            System.out.println("--- incremental mode : " + indexedFiles.size() + " files already indexed");
+        }
+
+        if (Files.isDirectory(path)) {
+            // progress of the previous run, resumed if it was interrupted
+            Checkpoint checkpoint = checkpoint(path);
+            if (checkpoint.resumeFrom != null) {
+                System.out.println("--- resuming the interrupted run over " + path + " from " + checkpoint.resumeFrom
+                        + " (" + checkpoint.indexedBefore() + " files indexed before)");
+            }
+            // the walker only queues paths, parsing and indexing is spread over the worker threads
+            new IndexingPipeline(this, threads, queueSize).run(path, checkpoint);
+            deleteMissing();
+        } else {
+            SourceFile file = SourceFile.read(path);
+            if (!isUpToDate(file)) {
+                indexDoc(file);
+            }
+        }
+    }
+
+    // the progress and the failed files of the runs over the docs tree
+    Checkpoint checkpoint(Path root) {
+        return Checkpoint.load(root, indexWriters);
+    }
+
+    void indexDoc(SourceFile file) throws IOException {
+        writeDoc(file, extractText(file));
+    }
+
+    // incremental mode : true when the file does not need to be parsed again
+    // the modification time and size are checked first, the content hash only when they changed
+    boolean isUpToDate(SourceFile file) throws IOException {
+        if (indexedFiles == null) {
+            return false;
+        }
+        indexedFiles.markSeen(file.path);
+        if (indexedFiles.isUnchanged(file)) {
+            return true;
+        }
+        if (indexedFiles.hasSameContent(file)) {
+            // the file was only touched, record the new time so the next run is stat only again
+            writerFor(file.toString()).updateNumericDocValue(new Term("path", file.toString()), "modified", file.lastModified);
+            return true;
+        }
+        return false;
+    }
+
+    // incremental mode : the file is in the docs tree, its document is not removed as deleted
+    // also for the files processed by the interrupted run, not looked at by the resumed one
+    void seen(Path file) {
+        if (indexedFiles != null) {
+            indexedFiles.markSeen(file);
+        }
+    }
+
+    // remove a deleted file, or the files under a deleted directory, which can be in any shard
+    void deleteDocs(String path) throws IOException {
+        Query underPath = new PrefixQuery(new Term("path", path + File.separator));
+        for (IndexWriter indexWriter : indexWriters) {
+            indexWriter.deleteDocuments(new Term("path", path));
+            indexWriter.deleteDocuments(underPath);
+        }
+    }
+
+    void commit() throws IOException {
+        for (IndexWriter indexWriter : indexWriters) {
+            indexWriter.commit();
+        }
+    }
+
+    // incremental mode : remove the documents of the files deleted since the last run
+    private void deleteMissing() throws IOException {
+        if (indexedFiles == null) {
+            return;
+        }
+        List<String> deleted = indexedFiles.unseen();
+        for (String path : deleted) {
+            System.out.println("--- deleting from index " + path);
+            writerFor(path).deleteDocuments(new Term("path", path));
+        }
+        System.out.println("--- incremental mode : " + deleted.size() + " deleted files removed from index");
+    }
+
+    // directory of the extracted text cache, disabled when not set
+    static String textCachePath = System.getProperty("indexer.textCache");
+    static long textCacheMaxMb = Long.getLong("indexer.textCacheMaxMb", 1024);
+    private TextCache textCache;
+
+    void openTextCache() throws IOException {
+        if (textCachePath != null) {
+            System.out.println("--- using extracted text cache at " + textCachePath);
+            textCache = new TextCache(Paths.get(textCachePath), textCacheMaxMb * 1024 * 1024);
+        }
+    }
+
+    // the cached text is used when the bytes of the file and maxChars did not change
+    String extractText(SourceFile file) throws IOException {
+        if (textCache == null) {
+            return extractText(file.path);
+        }
+        int limit = maxChars > 0 ? maxChars : Integer.MAX_VALUE;
+        String text = textCache.get(file.hash(), limit);
+        if (text == null) {
+            text = extractText(file.path);
+            textCache.put(file.hash(), text, limit);
+        }
+        return text;
+    }
+
+    // bulk load : large flushed segments and no merge until the end, then a single forceMerge
+    // when the index is empty, the documents are added without looking up the previous version of their path
+    static boolean bulk = Boolean.getBoolean("indexer.bulk");
+    static double ramBufferMb = Double.parseDouble(System.getProperty("indexer.ramBufferMb",
+            bulk ? "256" : String.valueOf(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB)));
+    // segments left by the final forceMerge of the bulk load (0 : no forceMerge)
+    static int forceMergeSegments = Integer.getInteger("indexer.forceMergeSegments", 1);
+    // false writes the files of each segment separately instead of in a compound file, faster to write but more file handles
+    static boolean compoundFiles = Boolean.parseBoolean(System.getProperty("indexer.compoundFiles", "true"));
+
+    // true when the documents can be added instead of updated, their path is not in the index yet
+    private boolean appendOnly;
+
+    // daemon mode : index the changes of the docs tree until the process is stopped
+    private void watch(Path docDir) throws IOException {
+        // the paths indexed from now on may already be in the index
+        appendOnly = false;
+        if (bulk) {
+            endBulk();
+        }
+        commit();
+        Watcher watcher = new Watcher(this, docDir);
+        // on Ctrl-C the watcher commits and the writers are closed before the JVM exits
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            watcher.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException ignore) {
+                // exiting anyway
+            }
+        }));
+        watcher.run();
+    }
+
+    // the writers go on with the merges and the buffer of an incremental run
+    // the segments flushed by the bulk load and not force merged are merged now
+    private void endBulk() throws IOException {
+        for (IndexWriter indexWriter : indexWriters) {
+            LiveIndexWriterConfig config = indexWriter.getConfig();
+            ((DeferredMergePolicy) config.getMergePolicy()).stopDeferring();
+            if (System.getProperty("indexer.ramBufferMb") == null) {
+                config.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+            }
+            indexWriter.maybeMerge();
+        }
+    }
+
+    // the merges deferred by the bulk load
+    void forceMerge() throws IOException {
+        long start = System.nanoTime();
+        int segments = 0;
+        for (IndexWriter indexWriter : indexWriters) {
+            try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
+                segments += reader.leaves().size();
+            }
+            indexWriter.forceMerge(forceMergeSegments);
+        }
+        System.out.println("--- merged " + segments + " segments into " + forceMergeSegments + " per index in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    // per file limits, so one pathological file can't stall the run or fill the heap
+    // the text after maxChars characters is not indexed (0 : no limit)
+    static int maxChars = Integer.getInteger("indexer.maxChars", 10_000_000);
+    static long parseTimeoutSeconds = Long.getLong("indexer.parseTimeoutSeconds", 300);
+    // when > 0, the text is indexed as passages of about this many characters, child documents of the file document
+    static int passageChars = Integer.getInteger("indexer.passageChars", 0);
+    // also index the text as word n-grams, for the exact phrases of searcher.queryMode=phrase
+    static boolean shingles = Boolean.getBoolean("indexer.shingles");
+
+    // keep the text in the index with the offsets of its terms, for the snippets of the searches
+    // the stored fields are compressed, the offsets make the postings bigger
+    static boolean storeContent = Boolean.getBoolean("indexer.storeContent");
+
+    // the content field of storeContent : the highlighter finds the matches in the postings,
+    // without analyzing the text again
+    static final FieldType STORED_CONTENT = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        STORED_CONTENT.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        STORED_CONTENT.freeze();
+    }
+
+    // the readers of the extracted text, in daemon threads so the worker can stop waiting for a parse that takes too long
+    private static final ExecutorService extractionThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "text-extraction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // read the text extracted by Tika, up to maxChars
+    // the text is extracted before indexing, so a slow parser does not hold the index writer
+    String extractText(Path file) throws IOException {
+        int limit = maxChars > 0 ? maxChars : Integer.MAX_VALUE;
+        // Tika parses in its own thread, started by ParsingReader with this executor, so it can be interrupted
+        AtomicReference<Thread> parseThread = new AtomicReference<>();
+        Executor parseExecutor = task -> {
+            Thread thread = new Thread(task, "tika-parse " + file.getFileName());
+            thread.setDaemon(true);
+            parseThread.set(thread);
+            thread.start();
+        };
+        try (InputStream stream = Files.newInputStream(file)) {
+            // the ParsingReader constructor already waits for the first characters of the parse, so it is timed too
+            Future<String> extraction = extractionThreads.submit(() -> {
+                Parser parser = new AutoDetectParser();
+                ParseContext context = new ParseContext();
+                context.set(Parser.class, parser);
+                try (Reader reader = new ParsingReader(parser, stream, new Metadata(), context, parseExecutor)) {
+                    StringBuilder text = new StringBuilder();
+                    char[] buffer = new char[8192];
+                    int read;
+                    while (text.length() < limit && (read = reader.read(buffer, 0, Math.min(buffer.length, limit - text.length()))) != -1) {
+                        text.append(buffer, 0, read);
+                    }
+                    return text.toString();
+                }
+            });
+
+            String text;
+            try {
+                text = parseTimeoutSeconds > 0 ? extraction.get(parseTimeoutSeconds, TimeUnit.SECONDS) : extraction.get();
+            } catch (TimeoutException ex) {
+                // the reading thread waits on the parse, and a parse blocked on I/O stops when interrupted
+                // or when the stream is closed. a parse spinning on the CPU keeps its daemon thread until it ends
+                extraction.cancel(true);
+                Thread thread = parseThread.get();
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                Metrics.counter("indexer.parseTimeouts").increment();
+                throw new IOException("parsing timed out after " + parseTimeoutSeconds + " seconds");
+            } catch (InterruptedException ex) {
+                extraction.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while extracting the text of " + file);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+            if (text.length() >= limit) {
+                System.out.println("WARNING : " + file + " has more than " + limit + " characters, the rest is not indexed");
+            }
+            return text;
+        }
+    }
+
+    // split the text in passages of at most passageChars characters, cut on a white space when there is one
+    static List<String> passages(String text, int passageChars) {
+        List<String> passages = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + passageChars);
+            if (end < text.length()) {
+                int space = end;
+                while (space > start + passageChars / 2 && !Character.isWhitespace(text.charAt(space))) {
+                    space--;
+                }
+                if (space > start + passageChars / 2) {
+                    end = space;
+                }
+            }
+            passages.add(text.substring(start, end));
+            start = end;
+        }
+        return passages;
+    }
+
+    // IndexWriter is thread safe, so this is called concurrently by the pipeline workers
+    void writeDoc(SourceFile file, String text) throws IOException {
+        Document doc = new Document();
+
+        // add path as a field that is searchable (indexed)
+        // but don't tokenize it, index term frequency or positional information
+        Field pathField = new StringField("path", file.toString(), Field.Store.YES);
+        doc.add(pathField);
+        // column oriented copy, the searcher reads it for the hits without decompressing stored fields
+        doc.add(new SortedDocValuesField("path", new BytesRef(file.toString())));
+
+        // use a LongPoint that is indexed ( fastly filterable with PointRangeQuery)
+        doc.add(new LongPoint("modified", file.lastModified));
+        // doc values and stored copies are read back cheaply by the incremental mode
+        doc.add(new NumericDocValuesField("modified", file.lastModified));
+        doc.add(new StoredField("modified", file.lastModified));
+        doc.add(new LongPoint("size", file.size));
+        doc.add(new NumericDocValuesField("size", file.size));
+        doc.add(new StoredField("size", file.size));
+        // pdf, docx, txt, ... for the filters and the facets of the searches
+        String fileType = file.type();
+        doc.add(new StringField("filetype", fileType, Field.Store.YES));
+        doc.add(new SortedDocValuesField("filetype", new BytesRef(fileType)));
+        // read back by the incremental mode when the time or the size changed, and already known with the text cache :
+        // the other runs don't read the whole file a second time for it
+        if (incremental || textCache != null) {
+            doc.add(new BinaryDocValuesField("hash", new BytesRef(file.hash())));
+        }
+
+        // file documents and passages are told apart by their type
+        doc.add(new StringField("type", "file", Field.Store.NO));
+        // the vocabulary of the suggestions
+        if (Suggestions.enabled) {
+            doc.add(Suggestions.wordsField(text));
+        }
+
+        // update the documents matching the same path
+        // if it does not exist, create it
+        if (verbose) {
+            System.out.println("--- creating or updating index " + file);
+        }
+        Term pathTerm = new Term("path", file.toString());
+
+        IndexWriter writer = writerFor(file.toString());
+        if (passageChars <= 0) {
+            // tokenize and index the text, stored only for the snippets
+            doc.add(storeContent ? new Field("content", text, STORED_CONTENT) : new TextField("content", text, Field.Store.NO));
+            if (shingles) {
+                doc.add(new TextField(RomanianFoldingAnalyzer.SHINGLES, text, Field.Store.NO));
+            }
+            if (appendOnly) {
+                writer.addDocument(doc);
+            } else {
+                writer.updateDocument(pathTerm, doc);
+            }
+            return;
+        }
+
+        // passages mode : a block of one child document per passage, followed by the file document
+        // the children also have the path term, so updating the path replaces the whole block
+        List<Document> block = new ArrayList<>();
+        for (String passage : passages(text, passageChars)) {
+            Document child = new Document();
+            child.add(new StringField("path", file.toString(), Field.Store.NO));
+            child.add(new StringField("type", "passage", Field.Store.NO));
+            child.add(new TextField("content", passage, Field.Store.NO));
+            if (shingles) {
+                child.add(new TextField(RomanianFoldingAnalyzer.SHINGLES, passage, Field.Store.NO));
+            }
+            block.add(child);
+        }
+        block.add(doc);
+        if (appendOnly) {
+            writer.addDocuments(block);
+        } else {
+            writer.updateDocuments(pathTerm, block);
+        }
+    }
+
+}
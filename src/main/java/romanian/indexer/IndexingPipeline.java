@@ -0,0 +1,244 @@
+package romanian.indexer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// staged ingestion :
+// 1. a walker (the calling thread) feeds file paths into a bounded queue
+// 2. a pool of workers takes paths, extracts text with Tika and writes documents to the shared IndexWriter
+// the queue is bounded, so the walker blocks when workers fall behind and memory stays bounded
+// 3. the files that failed are retried one at a time, once the workers are done
+// the progress is committed periodically with a Checkpoint, so an interrupted run can be resumed
+class IndexingPipeline {
+
+    // marks the end of the work, one per worker
+    private static final Path END = Paths.get("");
+
+    private final Indexer indexer;
+    private final int workers;
+    private final BlockingQueue<Path> queue;
+    // failed files with attempts left
+    private final Queue<Path> retries = new ConcurrentLinkedQueue<>();
+    private Checkpoint checkpoint;
+
+    // stage counters, shared by all workers
+    private final LongAdder indexed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder gaveUp = new LongAdder();
+    private final LongAdder walkNanos = new LongAdder();
+    private final LongAdder queueFullNanos = new LongAdder();
+    private final LongAdder extractNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    IndexingPipeline(Indexer indexer, int workers, int queueCapacity) {
+        this.indexer = indexer;
+        this.workers = Math.max(1, workers);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    void run(Path root, Checkpoint checkpoint) throws IOException {
+        System.out.println("--- indexing with " + workers + " workers, queue capacity " + queue.remainingCapacity());
+        long start = System.nanoTime();
+        this.checkpoint = checkpoint;
+        // the files which failed before the checkpoint of the interrupted run are not walked again
+        retries.addAll(checkpoint.failedBefore());
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(pool.submit(this::work));
+        }
+        ScheduledExecutorService checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (Checkpoint.intervalSeconds > 0) {
+            checkpoints.scheduleWithFixedDelay(() -> commit(false),
+                    Checkpoint.intervalSeconds, Checkpoint.intervalSeconds, TimeUnit.SECONDS);
+        }
+
+        try {
+            walk(root);
+        } finally {
+            // let every worker drain the queue and stop
+            for (int i = 0; i < workers; i++) {
+                put(END);
+            }
+            pool.shutdown();
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for indexing workers");
+            } catch (ExecutionException ex) {
+                throw new IOException("indexing worker failed", ex.getCause());
+            }
+        }
+        checkpoints.shutdownNow();
+
+        retry();
+        checkpoint.commit(indexed.sum(), skipped.sum(), failed.sum(), true);
+        report(System.nanoTime() - start);
+    }
+
+    private void walk(Path root) throws IOException {
+        long start = System.nanoTime();
+        walkSorted(root);
+        walkNanos.add(System.nanoTime() - start - queueFullNanos.sum());
+    }
+
+    // in the order of Checkpoint.compare, the same in every run, so a checkpoint tells which files were walked
+    // symbolic links to directories are not followed
+    private void walkSorted(Path dir) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            list.forEach(children::add);
+        }
+        children.sort(Path::compareTo);
+        for (Path child : children) {
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                walkSorted(child);
+            } else if (checkpoint.isDone(child)) {
+                indexer.seen(child);
+                resumed.increment();
+            } else {
+                checkpoint.walked(child);
+                enqueue(child);
+            }
+        }
+    }
+
+    // blocks while the queue is full (backpressure)
+    private void enqueue(Path file) throws IOException {
+        long start = System.nanoTime();
+        put(file);
+        queueFullNanos.add(System.nanoTime() - start);
+    }
+
+    private void put(Path file) throws IOException {
+        try {
+            queue.put(file);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while queueing " + file);
+        }
+    }
+
+    private Void work() throws InterruptedException {
+        while (true) {
+            Path path = queue.take();
+            if (path == END) {
+                return null;
+            }
+            process(path);
+            checkpoint.processed(path);
+        }
+    }
+
+    private void process(Path path) {
+        // the file is still in the docs tree : its previous document is kept even when it fails or is given up
+        indexer.seen(path);
+        SourceFile file = null;
+        try {
+            file = SourceFile.read(path);
+            if (checkpoint.gaveUp(file)) {
+                gaveUp.increment();
+                return;
+            }
+            if (indexer.isUpToDate(file)) {
+                skipped.increment();
+                return;
+            }
+
+            long start = System.nanoTime();
+            String text = indexer.extractText(file);
+            long extracted = System.nanoTime();
+            extractNanos.add(extracted - start);
+
+            indexer.writeDoc(file, text);
+            long written = System.nanoTime();
+            writeNanos.add(written - extracted);
+            indexed.increment();
+            checkpoint.succeeded(path);
+            record(file, text, extracted - start, written - extracted);
+        } catch (Throwable ex) {
+            // don't index files that can't be read, retry them later while they have attempts left
+            // an Error of a parser (out of memory, stack overflow) fails the file too : a worker that died
+            // would leave the walker blocked on the full queue once all of them are gone
+            int attempts = checkpoint.failed(path, file == null ? -1 : file.lastModified);
+            boolean retry = attempts < Checkpoint.maxAttempts;
+            System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at reading file " + path + " (" + ex.getMessage() + "). "
+                    + (retry ? "Retrying it later (attempt " + attempts + " of " + Checkpoint.maxAttempts + ")." : "Skipping it."));
+            if (retry) {
+                retries.add(path);
+            } else {
+                failed.increment();
+            }
+        }
+    }
+
+    // the failed files, one at a time : a parse that timed out or ran out of memory next to the others may pass alone.
+    // process adds them back while they have attempts left
+    private void retry() {
+        Path path;
+        while ((path = retries.poll()) != null) {
+            retried.increment();
+            Metrics.counter("indexer.retries").increment();
+            process(path);
+        }
+    }
+
+    // periodic checkpoint, the indexing goes on when it fails
+    private void commit(boolean finished) {
+        try {
+            checkpoint.commit(indexed.sum(), skipped.sum(), failed.sum(), finished);
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at committing a checkpoint (" + ex.getMessage() + ")");
+        }
+    }
+
+    private static void record(SourceFile file, String text, long extractNanos, long writeNanos) {
+        Metrics.histogram("indexer.extract.ns").record(extractNanos);
+        Metrics.histogram("indexer.write.ns").record(writeNanos);
+        Metrics.histogram("indexer.file.bytes").record(file.size);
+        Metrics.histogram("indexer.file.chars").record(text.length());
+        long millis = TimeUnit.NANOSECONDS.toMillis(extractNanos + writeNanos);
+        if (millis >= Metrics.slowFileMs) {
+            Metrics.counter("indexer.slowFiles").increment();
+            System.out.println(String.format("WARNING : slow file %s : %d ms (extraction %d ms, indexing %d ms, %d bytes, %d chars)",
+                    file, millis, TimeUnit.NANOSECONDS.toMillis(extractNanos), TimeUnit.NANOSECONDS.toMillis(writeNanos),
+                    file.size, text.length()));
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        double docsPerSecond = indexed.sum() * 1e9 / Math.max(1, elapsedNanos);
+        System.out.println(String.format("--- indexed %d documents (%d unchanged, %d failed) in %d ms : %.1f docs/sec",
+                indexed.sum(), skipped.sum(), failed.sum(), millis, docsPerSecond));
+        if (resumed.sum() > 0 || retried.sum() > 0 || gaveUp.sum() > 0) {
+            System.out.println(String.format("--- %d files processed before the checkpoint, %d retries, %d files failed %d times before and not changed",
+                    resumed.sum(), retried.sum(), gaveUp.sum(), Checkpoint.maxAttempts));
+        }
+        System.out.println(String.format("--- stage times : walk %d ms, blocked on full queue %d ms, extraction %d ms, indexing %d ms (summed over %d workers)",
+                TimeUnit.NANOSECONDS.toMillis(walkNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(queueFullNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(extractNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(writeNanos.sum()),
+                workers));
+    }
+}
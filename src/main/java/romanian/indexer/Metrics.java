@@ -0,0 +1,179 @@
+package romanian.indexer;
+
+import javax.management.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// named counters and histograms of the indexer and the searcher, process wide
+// exposed as the JMX bean romanian.indexer:type=Metrics (one attribute per counter and histogram statistic)
+// and, when metrics.dumpFile is set, appended to that file as one JSON object per line every metrics.dumpSeconds
+//
+// histograms of durations end in .ns (nanoseconds), the others are sizes (bytes, chars, docs)
+class Metrics implements DynamicMBean {
+
+    static String dumpFile = System.getProperty("metrics.dumpFile");
+    static long dumpSeconds = Long.getLong("metrics.dumpSeconds", 60);
+    // files and queries slower than these are printed, to find them in production
+    static long slowFileMs = Long.getLong("metrics.slowFileMs", 10_000);
+    static long slowQueryMs = Long.getLong("metrics.slowQueryMs", 1_000);
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private static boolean started;
+
+    private Metrics() {
+    }
+
+    static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    // register the JMX bean and schedule the dumps, once per process
+    static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("romanian.indexer:type=Metrics"));
+        } catch (JMException ex) {
+            System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at registering the metrics in JMX. They are not exposed.");
+        }
+        if (dumpFile != null && dumpSeconds > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleWithFixedDelay(Metrics::dump, dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+            System.out.println("--- dumping metrics to " + dumpFile + " every " + dumpSeconds + " seconds");
+        }
+    }
+
+    // append the current values to the dump file, if any
+    static void dump() {
+        if (dumpFile == null) {
+            return;
+        }
+        Path file = Paths.get(dumpFile);
+        try {
+            Files.write(file, (json() + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            System.out.println("WARNING : IOException at writing the metrics to " + file + ".");
+        }
+    }
+
+    // {"time":..., "counters":{"name":value,...}, "histograms":{"name":{"count":...,"mean":...,"p50":...,...},...}}
+    static String json() {
+        StringBuilder json = new StringBuilder("{\"time\":").append(System.currentTimeMillis()).append(",\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append('"').append(counter.getKey()).append("\":").append(counter.getValue().sum());
+            separator = ",";
+        }
+        json.append("},\"histograms\":{");
+        separator = "";
+        for (Map.Entry<String, Histogram> histogram : new TreeMap<>(histograms).entrySet()) {
+            json.append(separator).append('"').append(histogram.getKey()).append("\":{");
+            String statSeparator = "";
+            for (Map.Entry<String, Number> stat : statistics(histogram.getValue()).entrySet()) {
+                json.append(statSeparator).append('"').append(stat.getKey()).append("\":").append(stat.getValue());
+                statSeparator = ",";
+            }
+            json.append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static Map<String, Number> statistics(Histogram histogram) {
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("count", histogram.count());
+        statistics.put("mean", Math.round(histogram.mean()));
+        for (double quantile : QUANTILES) {
+            statistics.put("p" + Math.round(quantile * 100), histogram.percentile(quantile));
+        }
+        statistics.put("max", histogram.max());
+        return statistics;
+    }
+
+    // flat view for JMX : counter names, and <histogram>.<statistic>
+    private static Map<String, Long> attributes() {
+        Map<String, Long> attributes = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            attributes.put(counter.getKey(), counter.getValue().sum());
+        }
+        for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            for (Map.Entry<String, Number> stat : statistics(histogram.getValue()).entrySet()) {
+                attributes.put(histogram.getKey() + "." + stat.getKey(), stat.getValue().longValue());
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = attributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Long> attributes = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            if (attributes.containsKey(name)) {
+                list.add(new Attribute(name, attributes.get(name)));
+            }
+        }
+        return list;
+    }
+
+    // the metrics are read only
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    // built on every call, the metrics are created lazily
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (String name : attributes().keySet()) {
+            infos.add(new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false));
+        }
+        return new MBeanInfo(Metrics.class.getName(), "indexing and search metrics",
+                infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
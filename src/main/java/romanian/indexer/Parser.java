@@ -1,3 +1,5 @@
+package romanian.indexer;
+
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.ro.RomanianAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
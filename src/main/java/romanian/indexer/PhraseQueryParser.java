@@ -0,0 +1,104 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// the parser of searcher.queryMode=phrase : the words typed together are searched as a phrase
+// instead of as any of them, e.g. sisteme de operare is parsed as "sist ? oper".
+// the removed stopwords leave a gap of one position, so any word may stand in for them.
+// with searcher.phraseSlop > 0 the words may be that many moves apart (proximity).
+// the operators, fields, wildcards and quotes of the query syntax still apply.
+//
+// when every document of the index has the shingles field (indexer.shingles), exact phrases are searched on it :
+// 2 or 3 words are a single term, longer phrases a phrase of 3 word shingles,
+// with postings much shorter than the ones of the common words of the phrase
+class PhraseQueryParser extends QueryParser {
+
+    // true when every document of the index being searched has the shingles field
+    private final BooleanSupplier shingles;
+
+    PhraseQueryParser(String field, Analyzer analyzer, int phraseSlop, BooleanSupplier shingles) {
+        super(field, analyzer);
+        // the words between two operators reach getFieldQuery together
+        setSplitOnWhitespace(false);
+        setPhraseSlop(phraseSlop);
+        this.shingles = shingles;
+    }
+
+    @Override
+    protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+        if (getPhraseSlop() == 0 && field.equals(getField()) && shingles.getAsBoolean()) {
+            Query query = shingleQuery(queryText);
+            if (query != null) {
+                return query;
+            }
+        }
+        return super.getFieldQuery(field, queryText, true);
+    }
+
+    // an explicit proximity, "sisteme operare"~3 : the shingles only match the words next to each other
+    @Override
+    protected Query getFieldQuery(String field, String queryText, int slop) throws ParseException {
+        if (slop > 0) {
+            return createPhraseQuery(field, queryText, slop);
+        }
+        return super.getFieldQuery(field, queryText, slop);
+    }
+
+    // null when the text has a single word
+    private Query shingleQuery(String queryText) {
+        // the longest shingles, with their positions
+        List<String> shingles = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        int longest = 0;
+        try (TokenStream stream = getAnalyzer().tokenStream(RomanianFoldingAnalyzer.SHINGLES, queryText)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+            stream.reset();
+            int position = -1;
+            while (stream.incrementToken()) {
+                position += increment.getPositionIncrement();
+                String shingle = term.toString();
+                int words = shingle.split(" ").length;
+                if (words > longest) {
+                    shingles.clear();
+                    positions.clear();
+                    longest = words;
+                }
+                if (words == longest) {
+                    shingles.add(shingle);
+                    positions.add(position);
+                }
+            }
+            stream.end();
+        } catch (IOException ex) {
+            throw new RuntimeException("Error analyzing query text", ex);
+        }
+
+        // a single word is searched in the content field
+        if (longest < 2) {
+            return null;
+        }
+        if (shingles.size() == 1) {
+            return new TermQuery(new Term(RomanianFoldingAnalyzer.SHINGLES, shingles.get(0)));
+        }
+        PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+        for (int i = 0; i < shingles.size(); i++) {
+            phrase.add(new Term(RomanianFoldingAnalyzer.SHINGLES, shingles.get(i)), positions.get(i));
+        }
+        return phrase.build();
+    }
+}
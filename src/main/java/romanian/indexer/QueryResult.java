@@ -0,0 +1,38 @@
+package romanian.indexer;
+
+import org.apache.lucene.search.Query;
+
+import java.util.List;
+import java.util.Map;
+
+// the paths found for one query string, with the time it took to parse and execute it
+class QueryResult {
+
+    final String queryString;
+    // null when the query string could not be parsed
+    final Query query;
+    final List<String> paths;
+    final long latencyNanos;
+    // facet -> value -> number of matching files, null when they were not asked for
+    final Map<String, Map<String, Long>> facets;
+    // highlighted passages of each path (null for a path without stored text), null when they were not asked for
+    final List<String[]> snippets;
+
+    QueryResult(String queryString, Query query, List<String> paths, long latencyNanos) {
+        this(queryString, query, paths, latencyNanos, null);
+    }
+
+    QueryResult(String queryString, Query query, List<String> paths, long latencyNanos, Map<String, Map<String, Long>> facets) {
+        this(queryString, query, paths, latencyNanos, facets, null);
+    }
+
+    QueryResult(String queryString, Query query, List<String> paths, long latencyNanos, Map<String, Map<String, Long>> facets,
+                List<String[]> snippets) {
+        this.queryString = queryString;
+        this.query = query;
+        this.paths = paths;
+        this.latencyNanos = latencyNanos;
+        this.facets = facets;
+        this.snippets = snippets;
+    }
+}
@@ -0,0 +1,137 @@
+package romanian.indexer;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// bounded LRU cache of the paths found for a query
+// the key is the parsed query, so strings that analyze to the same terms ("natură", "natura") share an entry,
+// and the generation of the searcher : every refresh that opens a new searcher clears the cache
+class ResultCache implements ReferenceManager.RefreshListener {
+
+    private static final class Key {
+        final Query query;
+        final int k;
+        final long generation;
+
+        Key(Query query, int k, long generation) {
+            this.query = query;
+            this.k = k;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return k == key.k && generation == key.generation && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * query.hashCode() + k) + Long.hashCode(generation);
+        }
+    }
+
+    private final int maxEntries;
+    // access ordered, the eldest entry is the least recently used
+    private final LinkedHashMap<Key, List<String>> entries;
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    ResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<String>> eldest) {
+                if (size() > ResultCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // read the generation before acquiring the searcher, and use it for get and put
+    // a result computed on a searcher that was refreshed meanwhile is then never served
+    long generation() {
+        return generation;
+    }
+
+    // null when not cached
+    List<String> get(Query query, int k, long generation) {
+        List<String> paths;
+        synchronized (entries) {
+            paths = entries.get(new Key(query, k, generation));
+        }
+        if (paths == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return paths;
+    }
+
+    void put(Query query, int k, long generation, List<String> paths) {
+        synchronized (entries) {
+            if (generation == this.generation) {
+                entries.put(new Key(query, k, generation), Collections.unmodifiableList(paths));
+            }
+        }
+    }
+
+    @Override
+    public void beforeRefresh() {
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            synchronized (entries) {
+                generation++;
+                entries.clear();
+            }
+            invalidations.increment();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    long invalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Result cache : %d entries, %d hits, %d misses, %d evictions, %d invalidations",
+                size(), hits(), misses(), evictions(), invalidations());
+    }
+}
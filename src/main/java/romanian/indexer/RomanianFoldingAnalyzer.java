@@ -0,0 +1,110 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.*;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.ro.RomanianAnalyzer;
+import org.apache.lucene.analysis.shingle.ShingleFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+// the analyzer of the content field, shared by the Indexer and the Searcher :
+// standard tokenizer, lower case, ASCII folding, stopwords, Romanian stemming until the stem does not change
+//
+// the stopwords are the ones of RomanianAnalyzer, folded once in memory, so no file is written or read.
+// VERSION is recorded in the commit user data of the index : documents analyzed differently than the queries
+// are silently missed, so the Searcher refuses an index written by another version.
+// it must change with anything that changes the tokens.
+//
+// the shingles field (indexer.shingles) gets the same chain without the stopwords, as word n-grams
+// for the exact phrases of the searcher.queryMode=phrase
+final class RomanianFoldingAnalyzer extends Analyzer {
+
+    static final String VERSION = "romanian-folding-1";
+    static final String USER_DATA_KEY = "analyzer";
+
+    // the folded stopwords are matched after the folding, so both "și" and "si" are removed
+    static final CharArraySet STOPWORDS = CharArraySet.unmodifiableSet(foldedStopwords());
+
+    static final String SHINGLES = "shingles";
+    // "sisteme de operare" is the single term "sist de oper"
+    static final int MAX_SHINGLE_WORDS = 3;
+
+    RomanianFoldingAnalyzer() {
+        // the shingles field has its own chain
+        super(PER_FIELD_REUSE_STRATEGY);
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer tokenizer = new StandardTokenizer();
+        if (SHINGLES.equals(fieldName)) {
+            // the stopwords are kept : they are part of the phrases, and removing them would leave holes in the n-grams
+            TokenStream words = new RomanianStemFilter(new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer)));
+            ShingleFilter shingles = new ShingleFilter(words, 2, MAX_SHINGLE_WORDS);
+            shingles.setOutputUnigrams(false);
+            // a text of a single word has the field too, the searcher checks that every document has it
+            shingles.setOutputUnigramsIfNoShingles(true);
+            return new TokenStreamComponents(tokenizer, shingles);
+        }
+        TokenStream stream = new LowerCaseFilter(tokenizer);
+        // remove diacritics before stemming
+        // if this is done afterwards, it may lead to understemming :
+        // e.g. functioneaza -> functioneaz, funcţionează -> function
+        stream = new ASCIIFoldingFilter(stream);
+        stream = new StopFilter(stream, STOPWORDS);
+        // stemming multiple times solves some problems, but may lead to overstemming
+        // we prefer overstemmng to understemming in this search use case
+        // same output as three SnowballPorterFilterFactory(Romanian) in a row, in a single memoizing pass
+        stream = new RomanianStemFilter(stream);
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    // wildcard, prefix and fuzzy query terms are only lower cased and folded
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+    }
+
+    private static CharArraySet foldedStopwords() {
+        CharArraySet stopwords = new CharArraySet(RomanianAnalyzer.getDefaultStopSet().size(), false);
+        for (Object stopword : RomanianAnalyzer.getDefaultStopSet()) {
+            char[] word = (char[]) stopword;
+            // a folded char can be up to 4 chars
+            char[] folded = new char[4 * word.length];
+            int length = ASCIIFoldingFilter.foldToASCII(word, 0, folded, 0, word.length);
+            stopwords.add(new String(folded, 0, length));
+        }
+        return stopwords;
+    }
+
+    // written with every commit of the writer, with the progress of the Indexer (see Checkpoint)
+    static void record(IndexWriter writer) {
+        Checkpoint.setCommitData(writer, Collections.singletonMap(USER_DATA_KEY, VERSION));
+    }
+
+    // null when there is no index, or when it was written before the versions were recorded
+    static String indexedVersion(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return null;
+        }
+        return SegmentInfos.readLatestCommit(directory).getUserData().get(USER_DATA_KEY);
+    }
+
+    // refuse an index analyzed by another version, warn when it is unknown
+    static void check(Directory directory, Path index) throws IOException {
+        String indexed = indexedVersion(directory);
+        if (indexed == null) {
+            System.out.println("WARNING : " + index + " has no analyzer version, it may not be analyzed like the queries (" + VERSION + ")");
+        } else if (!indexed.equals(VERSION)) {
+            throw new IOException(index + " was analyzed by " + indexed + " and the queries are analyzed by " + VERSION
+                    + ", rebuild the index");
+        }
+    }
+}
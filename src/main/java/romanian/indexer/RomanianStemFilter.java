@@ -0,0 +1,83 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.tartarus.snowball.ext.RomanianStemmer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// same output as three SnowballFilter(Romanian) in a row, in a single filter :
+// - the stemmer is applied at most three times, and stops as soon as a pass does not change the term
+//   (stemming a term that is its own stem gives the same term again, so the result is identical)
+// - stems are memoized, Romanian text repeats the same words a lot,
+//   so most tokens are a cache lookup on the term buffer, without allocation
+final class RomanianStemFilter extends TokenFilter {
+
+    static final int PASSES = 3;
+    static final int DEFAULT_CACHE_SIZE = 16 * 1024;
+
+    private final RomanianStemmer stemmer = new RomanianStemmer();
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
+
+    // term -> stem, cleared when full
+    // a filter instance is only used by one thread at a time, so it doesn't need to be synchronized
+    private final CharArrayMap<char[]> cache;
+    private final int cacheSize;
+
+    RomanianStemFilter(TokenStream input) {
+        this(input, DEFAULT_CACHE_SIZE);
+    }
+
+    RomanianStemFilter(TokenStream input, int cacheSize) {
+        super(input);
+        this.cacheSize = cacheSize;
+        this.cache = new CharArrayMap<>(Math.max(16, cacheSize), false);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (keywordAtt.isKeyword()) {
+            return true;
+        }
+
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        char[] stem = cache.get(buffer, 0, length);
+        if (stem == null) {
+            char[] term = Arrays.copyOf(buffer, length);
+            stem = stem(term);
+            if (cacheSize > 0) {
+                if (cache.size() >= cacheSize) {
+                    cache.clear();
+                }
+                cache.put(term, stem);
+            }
+        }
+        termAtt.copyBuffer(stem, 0, stem.length);
+        return true;
+    }
+
+    private char[] stem(char[] term) {
+        char[] current = term;
+        for (int pass = 0; pass < PASSES; pass++) {
+            // the stemmer works in place on the buffer it is given, so give it a copy
+            stemmer.setCurrent(Arrays.copyOf(current, current.length), current.length);
+            stemmer.stem();
+            char[] stemmed = Arrays.copyOf(stemmer.getCurrentBuffer(), stemmer.getCurrentBufferLength());
+            if (Arrays.equals(stemmed, current)) {
+                // fixed point, the next passes would not change it either
+                break;
+            }
+            current = stemmed;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,26 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+
+import java.util.Map;
+
+// factory for RomanianStemFilter, to be used in a CustomAnalyzer
+// optional parameter : cacheSize, the number of memoized stems (0 disables the cache)
+public class RomanianStemFilterFactory extends TokenFilterFactory {
+
+    private final int cacheSize;
+
+    public RomanianStemFilterFactory(Map<String, String> args) {
+        super(args);
+        cacheSize = getInt(args, "cacheSize", RomanianStemFilter.DEFAULT_CACHE_SIZE);
+        if (!args.isEmpty()) {
+            throw new IllegalArgumentException("Unknown parameters: " + args);
+        }
+    }
+
+    @Override
+    public TokenStream create(TokenStream input) {
+        return new RomanianStemFilter(input, cacheSize);
+    }
+}
@@ -0,0 +1,432 @@
+package romanian.indexer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+
+// resident search service : the index, the analyzer and the JVM are loaded once
+// and queries are served concurrently over HTTP
+//
+//   GET /search?q=sisteme+de+operare&k=10
+//   {"query":"sisteme de operare","processed":"content:sist content:oper","took_ms":0.42,"hits":["docs/..."]}
+//   both accept filters on the files and /search counts the matching files per type, year and size range :
+//   GET /search?q=munte&type=pdf,docx&modified_from=2019-01-01&modified_to=2019-12-31&min_size=1000&max_size=100000&facets=true
+//   {...,"hits":[...],"facets":{"type":{"docx":3,"pdf":1},"year":{"2019":4},"size":{"10KB-100KB":4}}}
+//   GET /search?q=munte&snippets=2
+//   {...,"hits":["docs/a.pdf"],"snippets":[["... pe <b>munte</b> ...","..."]]}
+//   the best passages of each hit, from the text stored by the Indexer (indexer.storeContent), null without it
+//   GET /export?q=...&k=10000
+//   {"query":"...","took_ms":12.5,"hits":[{"path":"docs/...","modified":1553000000000,"score":1.25},...]}
+//   large result lists, read from doc values only, not cached
+//   GET /suggest?q=masin&k=5
+//   {"query":"masin","took_ms":0.05,"completions":["mașină","mașini"],"did_you_mean":null}
+//   from the suggestions built by the Indexer, reloaded when they are rebuilt
+//   a search without hits also gets a did_you_mean
+//   GET /stats
+//   counters of the result cache
+//   GET /metrics
+//   counters and latency histograms of the searches, see Metrics
+//
+// the searcher is refreshed periodically, so segments committed by the Indexer become visible
+class SearchServer {
+
+    static int port = Integer.getInteger("server.port", 8080);
+    static long refreshMillis = Long.getLong("server.refreshMs", 1000);
+    // warm up the index before serving, and the new segments at each refresh
+    static boolean warmup = Boolean.parseBoolean(System.getProperty("server.warmup", "true"));
+    // larger k are lowered to it, the hits of a response are kept in memory
+    static int maxK = Integer.getInteger("server.maxK", 100_000);
+
+    private final HttpServer server;
+    private final ReferenceManager<IndexSearcher> searcherManager;
+    private final Searcher searcher;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService refresher;
+    private final Path index;
+    private final Path suggestionsFile;
+    // null when the Indexer did not build them
+    private volatile Suggestions suggestions;
+    private long suggestionsModified;
+
+    SearchServer(Path index, int port) throws IOException {
+        this.searcherManager = Searcher.openSearcherManager(index, warmup ? new IndexWarmer() : null);
+        this.executor = Executors.newFixedThreadPool(Searcher.threads);
+        this.searcher = new Searcher(searcherManager, Indexer.getAnalyzer(), executor);
+        this.refresher = Executors.newSingleThreadScheduledExecutor();
+        this.index = index;
+        this.suggestionsFile = Suggestions.path(index);
+        reloadSuggestions();
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/search", guarded(this::handleSearch));
+        this.server.createContext("/export", guarded(this::handleExport));
+        this.server.createContext("/suggest", guarded(this::handleSuggest));
+        this.server.createContext("/stats", guarded(this::handleStats));
+        this.server.createContext("/metrics", guarded(exchange -> respond(exchange, 200, Metrics.json())));
+        // requests are executed on the searcher threads
+        this.server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String indexPath = "index";
+        Metrics.start();
+        SearchServer searchServer = new SearchServer(Paths.get(indexPath), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(searchServer::stop));
+        searchServer.start();
+        System.out.println("--- serving " + indexPath + " on http://localhost:" + port + "/search?q=");
+    }
+
+    void start() {
+        if (warmup) {
+            // loads the analyzer and query classes, so the first request doesn't pay for it
+            searcher.query("sisteme de operare");
+        }
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                searcherManager.maybeRefresh();
+                reloadSuggestions();
+            } catch (IOException | RuntimeException ex) {
+                // an exception out of the task would cancel the later refreshes
+                System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at refreshing the searcher : " + ex.getMessage());
+            }
+        }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        server.start();
+    }
+
+    // when the Indexer wrote a new file
+    private void reloadSuggestions() throws IOException {
+        long modified = Files.exists(suggestionsFile) ? Files.getLastModifiedTime(suggestionsFile).toMillis() : 0;
+        if (modified == suggestionsModified) {
+            return;
+        }
+        suggestions = Suggestions.load(index);
+        suggestionsModified = modified;
+        if (suggestions != null) {
+            System.out.println("--- loaded the suggestions of " + suggestionsFile + " (" + suggestions.ramBytesUsed() / 1024 + " KB in memory)");
+        }
+    }
+
+    void stop() {
+        server.stop(0);
+        refresher.shutdown();
+        executor.shutdown();
+        try {
+            searcherManager.close();
+        } catch (IOException ex) {
+            System.out.println(ex);
+        }
+    }
+
+    // a request failing unexpectedly gets a 500 instead of a dropped connection
+    private static HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (Throwable ex) {
+                System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at serving " + exchange.getRequestURI() + " (" + ex.getMessage() + ")");
+                // unless the response was already started
+                if (exchange.getResponseCode() == -1) {
+                    try {
+                        respond(exchange, 500, "{\"error\":" + json(ex.getClass().getSimpleName()) + "}");
+                    } catch (IOException ignore) {
+                        // the client is gone
+                    }
+                }
+                exchange.close();
+            }
+        };
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String queryString = parameters.get("q");
+        int k = parseK(exchange, parameters);
+        if (k < 0) {
+            return;
+        }
+
+        Filters filters = parseFilters(exchange, parameters);
+        if (filters == null) {
+            return;
+        }
+        int snippets;
+        try {
+            snippets = Math.min(Snippets.MAX_PASSAGES, Math.max(0, Integer.parseInt(parameters.getOrDefault("snippets", "0"))));
+        } catch (NumberFormatException ex) {
+            respond(exchange, 400, "{\"error\":\"snippets must be a number\"}");
+            return;
+        }
+
+        QueryResult result = searcher.query(queryString, filters, k, snippets);
+        if (result.query == null) {
+            respond(exchange, 400, "{\"error\":\"can not parse query " + json(queryString) + "\"}");
+            return;
+        }
+
+        StringBuilder body = new StringBuilder();
+        body.append("{\"query\":").append(json(queryString))
+                .append(",\"processed\":").append(json(result.query.toString(Searcher.queryField)))
+                .append(",\"took_ms\":").append(String.format(Locale.ROOT, "%.3f", result.latencyNanos / 1e6))
+                .append(",\"hits\":[");
+        for (int i = 0; i < result.paths.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(json(result.paths.get(i)));
+        }
+        body.append("]");
+        if (result.snippets != null) {
+            body.append(",\"snippets\":[");
+            for (int i = 0; i < result.snippets.size(); i++) {
+                if (i > 0) {
+                    body.append(',');
+                }
+                body.append(json(result.snippets.get(i)));
+            }
+            body.append("]");
+        }
+        if (result.facets != null) {
+            body.append(",\"facets\":").append(json(result.facets));
+        }
+        Suggestions current = suggestions;
+        if (result.paths.isEmpty() && current != null) {
+            String didYouMean = current.didYouMean(queryString);
+            body.append(",\"did_you_mean\":").append(didYouMean == null ? "null" : json(didYouMean));
+        }
+        body.append("}");
+        respond(exchange, 200, body.toString());
+    }
+
+    private void handleSuggest(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String queryString = parameters.get("q");
+        int k = parseK(exchange, parameters);
+        if (k < 0) {
+            return;
+        }
+        Suggestions current = suggestions;
+        if (current == null) {
+            respond(exchange, 404, "{\"error\":\"no suggestions, they are built by the Indexer\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> completions = current.complete(queryString, Math.min(k, Suggestions.MAX_COMPLETIONS));
+        String didYouMean = current.didYouMean(queryString);
+        long took = System.nanoTime() - start;
+        Metrics.histogram("searcher.suggest.ns").record(took);
+
+        StringBuilder body = new StringBuilder();
+        body.append("{\"query\":").append(json(queryString))
+                .append(",\"took_ms\":").append(String.format(Locale.ROOT, "%.3f", took / 1e6))
+                .append(",\"completions\":[");
+        for (int i = 0; i < completions.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(json(completions.get(i)));
+        }
+        body.append("],\"did_you_mean\":").append(didYouMean == null ? "null" : json(didYouMean)).append('}');
+        respond(exchange, 200, body.toString());
+    }
+
+    private void handleExport(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String queryString = parameters.get("q");
+        int k = parseK(exchange, parameters);
+        if (k < 0) {
+            return;
+        }
+
+        Filters filters = parseFilters(exchange, parameters);
+        if (filters == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Searcher.Hit> hits;
+        try {
+            hits = searcher.export(queryString, filters, k);
+        } catch (ParseException ex) {
+            respond(exchange, 400, "{\"error\":\"can not parse query " + json(queryString) + "\"}");
+            return;
+        }
+        long took = System.nanoTime() - start;
+
+        StringBuilder body = new StringBuilder();
+        body.append("{\"query\":").append(json(queryString))
+                .append(",\"took_ms\":").append(String.format(Locale.ROOT, "%.3f", took / 1e6))
+                .append(",\"hits\":[");
+        for (int i = 0; i < hits.size(); i++) {
+            Searcher.Hit hit = hits.get(i);
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"path\":").append(json(hit.path))
+                    .append(",\"modified\":").append(hit.modified)
+                    .append(",\"score\":").append(hit.score)
+                    .append('}');
+        }
+        body.append("]}");
+        respond(exchange, 200, body.toString());
+    }
+
+    // k, at most maxK, or -1 after answering a bad request (also when q is missing)
+    private static int parseK(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String queryString = parameters.get("q");
+        if (queryString == null || queryString.trim().isEmpty()) {
+            respond(exchange, 400, "{\"error\":\"missing q parameter\"}");
+            return -1;
+        }
+        try {
+            return Math.min(maxK, Math.max(1, Integer.parseInt(parameters.getOrDefault("k", "10"))));
+        } catch (NumberFormatException ex) {
+            respond(exchange, 400, "{\"error\":\"k must be a number\"}");
+            return -1;
+        }
+    }
+
+    // null when they are invalid, the error is sent
+    private static Filters parseFilters(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        Set<String> types = new TreeSet<>();
+        for (String type : parameters.getOrDefault("type", "").split(",")) {
+            if (!type.trim().isEmpty()) {
+                types.add(type.trim().toLowerCase());
+            }
+        }
+        try {
+            return new Filters(types,
+                    parseTime(parameters.get("modified_from"), false),
+                    parseTime(parameters.get("modified_to"), true),
+                    parameters.containsKey("min_size") ? Long.parseLong(parameters.get("min_size")) : Long.MIN_VALUE,
+                    parameters.containsKey("max_size") ? Long.parseLong(parameters.get("max_size")) : Long.MAX_VALUE,
+                    Boolean.parseBoolean(parameters.get("facets")));
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            respond(exchange, 400, "{\"error\":\"modified_from and modified_to must be dates (2019-03-31) or milliseconds, "
+                    + "min_size and max_size numbers of bytes\"}");
+            return null;
+        }
+    }
+
+    // a UTC date (the whole day for an upper bound) or milliseconds since the epoch
+    static long parseTime(String value, boolean upperBound) {
+        if (value == null) {
+            return upperBound ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        if (value.matches("\\d{4}-\\d{2}-\\d{2}")) {
+            LocalDate date = LocalDate.parse(value);
+            if (upperBound) {
+                return date.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1;
+            }
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        return Long.parseLong(value);
+    }
+
+    // counters of the result cache, to size it
+    private void handleStats(HttpExchange exchange) throws IOException {
+        ResultCache cache = searcher.resultCache();
+        if (cache == null) {
+            respond(exchange, 200, "{\"result_cache\":null}");
+            return;
+        }
+        respond(exchange, 200, String.format(Locale.ROOT, "{\"result_cache\":{\"size\":%d,\"max_size\":%d,\"hits\":%d,\"misses\":%d,\"evictions\":%d,\"invalidations\":%d}}",
+                cache.size(), Searcher.cacheSize, cache.hits(), cache.misses(), cache.evictions(), cache.invalidations()));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    // JSON object of numbers, or of such objects
+    static String json(Map<String, ?> values) {
+        StringBuilder object = new StringBuilder("{");
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (object.length() > 1) {
+                object.append(',');
+            }
+            object.append(json(entry.getKey())).append(':');
+            if (entry.getValue() instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, ?> value = (Map<String, ?>) entry.getValue();
+                object.append(json(value));
+            } else {
+                object.append(entry.getValue());
+            }
+        }
+        return object.append('}').toString();
+    }
+
+    // JSON array of strings, null for a null array
+    static String json(String[] values) {
+        if (values == null) {
+            return "null";
+        }
+        StringBuilder array = new StringBuilder("[");
+        for (String value : values) {
+            if (array.length() > 1) {
+                array.append(',');
+            }
+            array.append(json(value));
+        }
+        return array.append(']').toString();
+    }
+
+    // quoted and escaped JSON string
+    static String json(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,442 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.*;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.store.Directory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class Searcher {
+
+    static String queryField = "content";
+    // number of queries of a batch executed in parallel
+    static int threads = Integer.getInteger("searcher.threads", Runtime.getRuntime().availableProcessors());
+    // number of cached query results, 0 disables the cache
+    static int cacheSize = Integer.getInteger("searcher.cacheSize", 1024);
+    // terms : the words of a query are searched as any of them, phrase : as a phrase, see PhraseQueryParser
+    static String queryMode = System.getProperty("searcher.queryMode", "terms");
+    // positions the words of a phrase may be moved by, 0 for exact phrases
+    static int phraseSlop = Integer.getInteger("searcher.phraseSlop", 0);
+
+    // QueryParser is not thread safe, so every thread gets its own
+    private final ThreadLocal<QueryParser> parser;
+    private final Analyzer analyzer;
+    // hands out the current IndexSearcher, which is thread safe and shared by all the queries
+    // refreshing it makes new commits of the indexer visible without reopening everything
+    private final ReferenceManager<IndexSearcher> searcherManager;
+    private final ExecutorService executor;
+    // null when disabled
+    private final ResultCache resultCache;
+    // the index has the shingles field, checked again at each refresh
+    private volatile boolean shingles;
+
+    Searcher(ReferenceManager<IndexSearcher> searcherManager, Analyzer analyzer, ExecutorService executor) {
+        this(searcherManager, analyzer, executor, cacheSize);
+    }
+
+    // cacheSize results kept in the result cache, none when 0
+    Searcher(ReferenceManager<IndexSearcher> searcherManager, Analyzer analyzer, ExecutorService executor, int cacheSize) {
+        if (queryMode.equals("phrase")) {
+            this.parser = ThreadLocal.withInitial(() -> new PhraseQueryParser(queryField, analyzer, phraseSlop, () -> this.shingles));
+        } else if (queryMode.equals("terms")) {
+            this.parser = ThreadLocal.withInitial(() -> new QueryParser(queryField, analyzer));
+        } else {
+            throw new IllegalArgumentException("searcher.queryMode must be terms or phrase, not " + queryMode);
+        }
+        this.analyzer = analyzer;
+        this.searcherManager = searcherManager;
+        this.executor = executor;
+        if (cacheSize > 0) {
+            this.resultCache = new ResultCache(cacheSize);
+            // cleared when the index changes
+            searcherManager.addListener(this.resultCache);
+        } else {
+            this.resultCache = null;
+        }
+        if (queryMode.equals("phrase")) {
+            checkShingles();
+            searcherManager.addListener(new ReferenceManager.RefreshListener() {
+                @Override
+                public void beforeRefresh() {
+                }
+
+                @Override
+                public void afterRefresh(boolean didRefresh) {
+                    if (didRefresh) {
+                        checkShingles();
+                    }
+                }
+            });
+        }
+    }
+
+    // the shingles are used only when every document with content has them :
+    // an index indexed before indexer.shingles was turned on has documents without them, which phrases would miss.
+    // (the documents made only of stopwords have shingles and no content, they keep the shingles off)
+    private void checkShingles() {
+        try {
+            IndexSearcher indexSearcher = this.searcherManager.acquire();
+            try {
+                IndexReader reader = indexSearcher.getIndexReader();
+                int withShingles = reader.getDocCount(RomanianFoldingAnalyzer.SHINGLES);
+                this.shingles = withShingles > 0 && withShingles == reader.getDocCount(queryField);
+            } finally {
+                this.searcherManager.release(indexSearcher);
+            }
+        } catch (IOException ex) {
+            this.shingles = false;
+            System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at checking the shingles of the index (" + ex.getMessage()
+                    + "), the phrases are searched in the " + queryField + " field");
+        }
+    }
+
+    ResultCache resultCache() {
+        return resultCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        String[] queries = {"sisteme de operare", "fauna", "flori", "natură", "google"};
+
+        String indexPath = "index";
+
+        // Create an index searcher
+        ReferenceManager<IndexSearcher> searcherManager = openSearcherManager(Paths.get(indexPath), null);
+
+        // the query parsers use the same analyzer as the indexer
+        Analyzer analyzer = Indexer.getAnalyzer();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Searcher searcher = new Searcher(searcherManager, analyzer, executor);
+        // "did you mean" for the queries without results, when the Indexer built the suggestions
+        Suggestions suggestions = Suggestions.load(Paths.get(indexPath));
+
+        Date start = new Date();
+        List<QueryResult> results;
+        try {
+            results = searcher.search(queries);
+        }
+        finally {
+            executor.shutdown();
+        }
+        // put a timer on query execution
+        Date end = new Date();
+        long duration = end.getTime() - start.getTime();
+        searcherManager.close();
+
+        // print results, in the order of the queries
+        for (QueryResult queryResult : results) {
+            String processed = queryResult.query == null ? queryResult.queryString : queryResult.query.toString(queryField);
+            System.out.println("Results for processed query : " + processed);
+            if(queryResult.paths.size() == 0){
+                System.out.println("No results found.");
+                String didYouMean = suggestions == null ? null : suggestions.didYouMean(queryResult.queryString);
+                if (didYouMean != null) {
+                    System.out.println("Did you mean : " + didYouMean + " ?");
+                }
+            }
+            for(String result : queryResult.paths){
+                System.out.println(result);
+            }
+            System.out.println();
+        }
+        System.out.println("Queries total time : " + duration + "ms");
+        System.out.println(latencySummary(results));
+        if (searcher.resultCache() != null) {
+            System.out.println(searcher.resultCache());
+        }
+        Metrics.dump();
+    }
+
+
+    // searches all the shards when the index is sharded
+    // warmer may be null
+    static ReferenceManager<IndexSearcher> openSearcherManager(Path indexPath, IndexWarmer warmer) throws IOException {
+        List<Path> shardPaths = Shards.list(indexPath);
+        if (shardPaths.isEmpty()) {
+            Directory index = IndexDirectories.open(indexPath, true);
+            RomanianFoldingAnalyzer.check(index, indexPath);
+            return new SearcherManager(index, warmer);
+        }
+        Directory[] shards = new Directory[shardPaths.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = IndexDirectories.open(shardPaths.get(i), true);
+            RomanianFoldingAnalyzer.check(shards[i], shardPaths.get(i));
+        }
+        return new ShardedSearcherManager(shards, warmer);
+    }
+
+
+    // execute multiple queries in parallel
+    // the results are in the same order as the queries, duplicate queries get their own result
+    List<QueryResult> search(String[] queries){
+        List<Future<QueryResult>> futures = new ArrayList<>();
+        for(String queryString : queries) {
+            futures.add(this.executor.submit(() -> this.query(queryString)));
+        }
+
+        List<QueryResult> results = new ArrayList<>();
+        for(Future<QueryResult> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted while waiting for query results");
+            }
+            catch (ExecutionException ex) {
+                throw new IllegalStateException("query failed", ex.getCause());
+            }
+        }
+        return results;
+    }
+
+
+    QueryResult query(String queryString){
+        return query(queryString, 10);
+    }
+
+    QueryResult query(String queryString, int k){
+        return query(queryString, Filters.NONE, k);
+    }
+
+    QueryResult query(String queryString, Filters filters, int k){
+        return query(queryString, filters, k, 0);
+    }
+
+    // execute a query and collect the paths of the top k documents matching the filters
+    // and, when snippets > 0, up to that many highlighted passages of each one
+    QueryResult query(String queryString, Filters filters, int k, int snippets){
+        long start = System.nanoTime();
+        Query query = null;
+        ArrayList<String> results = new ArrayList<>();
+        Map<String, Map<String, Long>> facets = null;
+        List<String[]> passages = snippets > 0 ? new ArrayList<>() : null;
+        try{
+            query = this.parser.get().parse(queryString);
+            long parsed = System.nanoTime();
+            Metrics.histogram("searcher.parse.ns").record(parsed - start);
+
+            // the facets and the snippets are not cached, they are computed with the hits
+            long generation = 0;
+            boolean cacheable = this.resultCache != null && !filters.facets && snippets == 0;
+            if (cacheable) {
+                generation = this.resultCache.generation();
+                List<String> cached = this.resultCache.get(filters.apply(query), k, generation);
+                if (cached != null) {
+                    Metrics.counter("searcher.cachedQueries").increment();
+                    return record(new QueryResult(queryString, query, cached, System.nanoTime() - start));
+                }
+            }
+
+            IndexSearcher indexSearcher = this.searcherManager.acquire();
+            long searched, fetched, highlighted;
+            try {
+                // Execute the query and show the results
+                Query filtered = filters.apply(fileQuery(indexSearcher, query));
+                TopDocs topDocs;
+                if (filters.facets) {
+                    // a single pass over the matching files, for both
+                    // the queue of the hits is allocated up front : capped at maxDoc like IndexSearcher.search does
+                    int numHits = Math.min(k, Math.max(1, indexSearcher.getIndexReader().maxDoc()));
+                    TopScoreDocCollector top = TopScoreDocCollector.create(numHits, Integer.MAX_VALUE);
+                    FacetCounter facetCounter = new FacetCounter();
+                    indexSearcher.search(filtered, MultiCollector.wrap(top, facetCounter));
+                    topDocs = top.topDocs();
+                    facets = facetCounter.counts();
+                } else {
+                    topDocs = indexSearcher.search(filtered, k);
+                }
+                searched = System.nanoTime();
+                // Display addresses
+                Hit[] hits = resolve(indexSearcher, topDocs.scoreDocs, true);
+                fetched = System.nanoTime();
+                String[][] hitSnippets = snippets > 0
+                        ? new Snippets(indexSearcher, this.analyzer).top(queryField, highlightQuery(queryString, query), topDocs.scoreDocs, snippets) : null;
+                highlighted = System.nanoTime();
+                for (int i = 0; i < hits.length; i++) {
+                    if (hits[i] != null) {
+                        results.add(hits[i].path);
+                        if (passages != null) {
+                            passages.add(hitSnippets[i]);
+                        }
+                    }
+                }
+            }
+            finally {
+                this.searcherManager.release(indexSearcher);
+            }
+            Metrics.histogram("searcher.search.ns").record(searched - parsed);
+            Metrics.histogram("searcher.fetch.ns").record(fetched - searched);
+            if (snippets > 0) {
+                Metrics.histogram("searcher.highlight.ns").record(highlighted - fetched);
+            }
+
+            if (cacheable) {
+                this.resultCache.put(filters.apply(query), k, generation, results);
+            }
+        }
+        catch(ParseException | IOException ex){
+            Metrics.counter("searcher.failedQueries").increment();
+            System.out.println(ex);
+        }
+
+        return record(new QueryResult(queryString, query, results, System.nanoTime() - start, facets, passages));
+    }
+
+    // the snippets are highlighted in the content field : the phrases searched on the shingles field
+    // are highlighted as the same phrases of the content field
+    private Query highlightQuery(String queryString, Query query) throws ParseException {
+        if (!(this.parser.get() instanceof PhraseQueryParser) || !this.shingles) {
+            return query;
+        }
+        return new PhraseQueryParser(queryField, this.analyzer, phraseSlop, () -> false).parse(queryString);
+    }
+
+    // total latency, and the slow queries printed to find them in production
+    private static QueryResult record(QueryResult result) {
+        Metrics.histogram("searcher.query.ns").record(result.latencyNanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(result.latencyNanos);
+        if (millis >= Metrics.slowQueryMs) {
+            Metrics.counter("searcher.slowQueries").increment();
+            System.out.println("WARNING : slow query '" + result.queryString + "' : " + millis + " ms");
+        }
+        return result;
+    }
+
+
+    // a search hit, read from the doc values
+    static class Hit {
+        final String path;
+        // -1 when the document has no modified doc value
+        final long modified;
+        final float score;
+
+        Hit(String path, long modified, float score) {
+            this.path = path;
+            this.modified = modified;
+            this.score = score;
+        }
+    }
+
+    // top k paths and modification times, for exports with a large k
+    // only doc values are read : documents indexed before path had doc values are left out
+    List<Hit> export(String queryString, int k) throws ParseException, IOException {
+        return export(queryString, Filters.NONE, k);
+    }
+
+    List<Hit> export(String queryString, Filters filters, int k) throws ParseException, IOException {
+        Query query = this.parser.get().parse(queryString);
+        IndexSearcher indexSearcher = this.searcherManager.acquire();
+        try {
+            Query filtered = filters.apply(fileQuery(indexSearcher, query));
+            return hits(indexSearcher, indexSearcher.search(filtered, k).scoreDocs, false);
+        }
+        finally {
+            this.searcherManager.release(indexSearcher);
+        }
+    }
+
+    private static final Term PASSAGE = new Term("type", "passage");
+    // the file documents, which close every block of passages
+    // the bit sets are cached per segment, so it is shared by all the searches
+    private static final QueryBitSetProducer FILES = new QueryBitSetProducer(new TermQuery(new Term("type", "file")));
+
+    // an index written with passages (indexer.passageChars) has the text in child documents :
+    // a file is then scored by its best passage, while files without passages still match directly
+    static Query fileQuery(IndexSearcher indexSearcher, Query query) throws IOException {
+        if (indexSearcher.getIndexReader().docFreq(PASSAGE) == 0) {
+            return query;
+        }
+        Query passages = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermQuery(PASSAGE), BooleanClause.Occur.FILTER)
+                .build();
+        Query files = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermQuery(PASSAGE), BooleanClause.Occur.MUST_NOT)
+                .build();
+        return new BooleanQuery.Builder()
+                .add(files, BooleanClause.Occur.SHOULD)
+                .add(new ToParentBlockJoinQuery(passages, FILES, ScoreMode.Max), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    // resolve the hits through the path and modified doc values, in score order
+    // the hits are visited in docID order, so each segment's doc values are read forward, once
+    // storedFallback loads the stored path of documents without doc values (indexes written by older versions)
+    static List<Hit> hits(IndexSearcher indexSearcher, ScoreDoc[] scoreDocs, boolean storedFallback) throws IOException {
+        List<Hit> result = new ArrayList<>();
+        for (Hit hit : resolve(indexSearcher, scoreDocs, storedFallback)) {
+            if (hit != null) {
+                result.add(hit);
+            }
+        }
+        return result;
+    }
+
+    // the hits of the score docs, null for the documents without a path
+    private static Hit[] resolve(IndexSearcher indexSearcher, ScoreDoc[] scoreDocs, boolean storedFallback) throws IOException {
+        Integer[] order = new Integer[scoreDocs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> scoreDocs[i].doc));
+
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves();
+        Hit[] hits = new Hit[scoreDocs.length];
+        LeafReaderContext leaf = null;
+        SortedDocValues paths = null;
+        NumericDocValues modified = null;
+        for (int i : order) {
+            ScoreDoc scoreDoc = scoreDocs[i];
+            if (leaf == null || scoreDoc.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+                // null in segments written before the doc values were added
+                paths = leaf.reader().getSortedDocValues("path");
+                modified = leaf.reader().getNumericDocValues("modified");
+            }
+            int doc = scoreDoc.doc - leaf.docBase;
+            String path = null;
+            if (paths != null && paths.advanceExact(doc)) {
+                path = paths.binaryValue().utf8ToString();
+            } else if (storedFallback) {
+                path = indexSearcher.doc(scoreDoc.doc, Collections.singleton("path")).get("path");
+            }
+            long time = modified != null && modified.advanceExact(doc) ? modified.longValue() : -1;
+            hits[i] = path == null ? null : new Hit(path, time, scoreDoc.score);
+        }
+        return hits;
+    }
+
+
+    // per query latency percentiles of a batch
+    static String latencySummary(List<QueryResult> results){
+        if (results.isEmpty()) {
+            return "Query latency : no queries";
+        }
+        long[] latencies = new long[results.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = results.get(i).latencyNanos;
+        }
+        Arrays.sort(latencies);
+        return String.format("Query latency : p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms",
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.90) / 1e6,
+                percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6);
+    }
+
+    // nearest rank percentile of sorted values
+    static long percentile(long[] sorted, double percentile){
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+}
@@ -0,0 +1,116 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// SearcherManager over all the shards of an index
+// the searcher reads a MultiReader of the shards, so term statistics and scores are global,
+// as if the documents were in a single index, and the top k is merged by the IndexSearcher.
+// the segments of all the shards are searched in parallel on the executor
+// a refresh reopens only the shards that changed
+class ShardedSearcherManager extends ReferenceManager<IndexSearcher> {
+
+    private final Directory[] shards;
+    // may be null
+    private final IndexWarmer warmer;
+    private final ExecutorService executor;
+
+    ShardedSearcherManager(Directory[] shards, IndexWarmer warmer) throws IOException {
+        this.shards = shards;
+        this.warmer = warmer;
+        this.executor = Executors.newFixedThreadPool(shards.length);
+
+        DirectoryReader[] readers = new DirectoryReader[shards.length];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                readers[i] = DirectoryReader.open(shards[i]);
+            }
+            current = newSearcher(readers);
+        } finally {
+            // the MultiReader holds its own reference on the shards
+            for (DirectoryReader reader : readers) {
+                if (reader != null) {
+                    reader.decRef();
+                }
+            }
+        }
+    }
+
+    private IndexSearcher newSearcher(DirectoryReader[] readers) throws IOException {
+        ShardsReader reader = new ShardsReader(readers);
+        if (warmer != null) {
+            warmer.warm(reader);
+        }
+        return new IndexSearcher(reader, executor);
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+        DirectoryReader[] readers = ((ShardsReader) referenceToRefresh.getIndexReader()).shards();
+        List<DirectoryReader> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                DirectoryReader newer = DirectoryReader.openIfChanged(readers[i]);
+                if (newer != null) {
+                    readers[i] = newer;
+                    opened.add(newer);
+                }
+            }
+            return opened.isEmpty() ? null : newSearcher(readers);
+        } finally {
+            for (DirectoryReader reader : opened) {
+                reader.decRef();
+            }
+        }
+    }
+
+    @Override
+    protected void decRef(IndexSearcher reference) throws IOException {
+        reference.getIndexReader().decRef();
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher reference) {
+        return reference.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher reference) {
+        return reference.getIndexReader().getRefCount();
+    }
+
+    @Override
+    protected void afterClose() throws IOException {
+        executor.shutdown();
+        for (Directory shard : shards) {
+            shard.close();
+        }
+    }
+
+    // keeps a reference on each shard reader, and gives them back for the refresh
+    private static class ShardsReader extends MultiReader {
+
+        ShardsReader(DirectoryReader[] shards) throws IOException {
+            super(shards, false);
+        }
+
+        DirectoryReader[] shards() {
+            List<? extends IndexReader> readers = getSequentialSubReaders();
+            DirectoryReader[] shards = new DirectoryReader[readers.size()];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = (DirectoryReader) readers.get(i);
+            }
+            return shards;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// a sharded index is made of independent indexes in <index>/shard-0 ... <index>/shard-N-1
+// documents are assigned to a shard by the hash of their path, so a file always goes to the same shard
+class Shards {
+
+    static final String PREFIX = "shard-";
+
+    // number of shards written by the indexer, 1 writes a single index in the index directory
+    static int count = Integer.getInteger("indexer.shards", 1);
+    // combine the shards in a single index at the end of the indexing
+    static boolean merge = Boolean.getBoolean("indexer.mergeShards");
+
+    static Path path(Path index, int shard) {
+        return index.resolve(PREFIX + shard);
+    }
+
+    static int of(String path, int shards) {
+        return Math.floorMod(path.hashCode(), shards);
+    }
+
+    // the shard directories of an index, in shard order, empty when the index is not sharded
+    static List<Path> list(Path index) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(index)) {
+            return shards;
+        }
+        try (Stream<Path> paths = Files.list(index)) {
+            paths.filter(path -> Files.isDirectory(path) && path.getFileName().toString().matches(PREFIX + "\\d+"))
+                    .sorted(Comparator.comparingInt(path -> Integer.parseInt(path.getFileName().toString().substring(PREFIX.length()))))
+                    .forEach(shards::add);
+        }
+        return shards;
+    }
+
+    // replace the content of the index directory with the documents of all the shards, then delete the shards
+    static void merge(Path index, Analyzer analyzer) throws IOException {
+        List<Path> shardPaths = list(index);
+        System.out.println("--- merging " + shardPaths.size() + " shards in " + index);
+        List<Directory> shards = new ArrayList<>();
+        try {
+            for (Path shard : shardPaths) {
+                shards.add(IndexDirectories.open(shard, false));
+            }
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            try (Directory merged = IndexDirectories.open(index, false);
+                 IndexWriter writer = new IndexWriter(merged, config)) {
+                writer.addIndexes(shards.toArray(new Directory[0]));
+                RomanianFoldingAnalyzer.record(writer);
+                writer.commit();
+            }
+        } finally {
+            for (Directory shard : shards) {
+                shard.close();
+            }
+        }
+        for (Path shard : shardPaths) {
+            delete(shard);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
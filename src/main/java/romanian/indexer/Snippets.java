@@ -0,0 +1,75 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.search.uhighlight.PassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+
+import java.io.IOException;
+import java.util.Map;
+
+// the best passages of the hits, html escaped with the matching words in <b></b>, from the text stored by the Indexer
+// (indexer.storeContent) : the source files are not opened again.
+// the matches are read from the offsets in the postings, so the text is not analyzed again.
+// created for each search, it is bound to the IndexSearcher of the search
+class Snippets extends UnifiedHighlighter {
+
+    // passages of a document, the larger k asked are lowered to it : the highlighter sizes its queue with k
+    static final int MAX_PASSAGES = 10;
+
+    // each passage alone
+    private static final PassageFormatter FORMATTER = new PassageFormatter() {
+        private final DefaultPassageFormatter passage = new DefaultPassageFormatter("<b>", "</b>", " ... ", false) {
+            // the default escaping writes every other char than letters and digits as an entity
+            @Override
+            protected void append(StringBuilder dest, String content, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    char c = content.charAt(i);
+                    switch (c) {
+                        case '&': dest.append("&amp;"); break;
+                        case '<': dest.append("&lt;"); break;
+                        case '>': dest.append("&gt;"); break;
+                        case '"': dest.append("&quot;"); break;
+                        default: dest.append(c);
+                    }
+                }
+            }
+        };
+
+        @Override
+        public Object format(Passage[] passages, String content) {
+            String[] snippets = new String[passages.length];
+            for (int i = 0; i < passages.length; i++) {
+                snippets[i] = passage.format(new Passage[]{passages[i]}, content);
+            }
+            return snippets;
+        }
+    };
+
+    Snippets(IndexSearcher indexSearcher, Analyzer analyzer) {
+        super(indexSearcher, analyzer);
+        // the whole stored text, not only its beginning
+        setMaxLength(Indexer.maxChars > 0 ? Indexer.maxChars : Integer.MAX_VALUE - 1);
+        setFormatter(FORMATTER);
+    }
+
+    // at most k passages of each document, in the order of the documents, in the order of the text
+    // a document without a match gets its first sentences, one without stored text gets null
+    String[][] top(String field, Query query, ScoreDoc[] scoreDocs, int k) throws IOException {
+        int[] docs = new int[scoreDocs.length];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = scoreDocs[i].doc;
+        }
+        Map<String, Object[]> highlighted = highlightFieldsAsObjects(new String[]{field}, query, docs, new int[]{Math.min(k, MAX_PASSAGES)});
+        Object[] passages = highlighted.get(field);
+        String[][] snippets = new String[docs.length][];
+        for (int i = 0; i < docs.length; i++) {
+            snippets[i] = (String[]) passages[i];
+        }
+        return snippets;
+    }
+}
@@ -0,0 +1,98 @@
+package romanian.indexer;
+
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+// a file to index, with the attributes recorded in the index
+// the content hash and the type are computed only when asked for, since they need to read the file
+class SourceFile {
+
+    // Tika's media types, detected from the magic bytes and the name
+    // the name tells a docx from other zip files without opening it, and loading them is cheaper than the parsers
+    private static final Detector DETECTOR = MimeTypes.getDefaultMimeTypes();
+    // short names of the common media types, the others are named by their subtype
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("application/pdf", "pdf");
+        TYPES.put("application/vnd.openxmlformats-officedocument.wordprocessingml.document", "docx");
+        TYPES.put("application/msword", "doc");
+        TYPES.put("application/vnd.oasis.opendocument.text", "odt");
+        TYPES.put("application/rtf", "rtf");
+        TYPES.put("text/plain", "txt");
+        TYPES.put("text/html", "html");
+    }
+
+    final Path path;
+    final long lastModified;
+    final long size;
+    private String hash;
+    private String type;
+
+    private SourceFile(Path path, long lastModified, long size) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    static SourceFile read(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return new SourceFile(path, attrs.lastModifiedTime().toMillis(), attrs.size());
+    }
+
+    // SHA-256 of the file bytes, as hex
+    String hash() throws IOException {
+        if (hash == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+            try (InputStream stream = new DigestInputStream(Files.newInputStream(path), digest)) {
+                byte[] buffer = new byte[64 * 1024];
+                while (stream.read(buffer) != -1) {
+                    // reading updates the digest
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            hash = hex.toString();
+        }
+        return hash;
+    }
+
+    // pdf, docx, txt, ... from the media type detected by Tika
+    String type() throws IOException {
+        if (type == null) {
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.RESOURCE_NAME_KEY, path.getFileName().toString());
+            try (TikaInputStream stream = TikaInputStream.get(path)) {
+                MediaType mediaType = DETECTOR.detect(stream, metadata);
+                type = TYPES.getOrDefault(mediaType.getBaseType().toString(), mediaType.getSubtype());
+            }
+        }
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
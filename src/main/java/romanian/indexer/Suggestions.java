@@ -0,0 +1,218 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.miscellaneous.LengthFilter;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ro.RomanianAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.spell.HighFrequencyDictionary;
+import org.apache.lucene.search.spell.LevenshteinDistance;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.*;
+
+// prefix completions and "did you mean" corrections, from the vocabulary of the indexed text
+// the indexer adds the words of each file, lower cased but with their diacritics, to the words field.
+// at the end of the indexing they are loaded, weighted by the number of files containing them,
+// in two FSTs saved next to the index (<index>-suggest.fst) and held in memory by the search server.
+// their keys are folded like the content field, so "masin" completes to "mașină" and "automobll" is corrected
+class Suggestions {
+
+    static boolean enabled = Boolean.parseBoolean(System.getProperty("indexer.suggestions", "false"));
+    static final String FIELD = "words";
+    // completions returned by a lookup, the larger k asked are lowered to it
+    static final int MAX_COMPLETIONS = 100;
+
+    // only the vocabulary is needed : no frequencies, positions or norms
+    static final FieldType WORDS_TYPE = new FieldType();
+
+    static {
+        WORDS_TYPE.setIndexOptions(IndexOptions.DOCS);
+        WORDS_TYPE.setTokenized(true);
+        WORDS_TYPE.setOmitNorms(true);
+        WORDS_TYPE.freeze();
+    }
+
+    // the words as written, without the stopwords and numbers too long to be words
+    private static final Analyzer WORDS = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            StandardTokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            stream = new StopFilter(stream, RomanianAnalyzer.getDefaultStopSet());
+            stream = new LengthFilter(stream, 2, 30);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    };
+
+    // keys of the FSTs, for the words and for what the users type
+    private static final Analyzer KEYS = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            StandardTokenizer tokenizer = new StandardTokenizer();
+            return new TokenStreamComponents(tokenizer, new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer)));
+        }
+    };
+
+    private static final CharArraySet STOPWORDS = RomanianFoldingAnalyzer.STOPWORDS;
+    // 1 - edit distance / length of the longest word
+    private static final LevenshteinDistance DISTANCE = new LevenshteinDistance();
+
+    private final AnalyzingSuggester completions;
+    private final FuzzySuggester corrections;
+
+    private Suggestions() {
+        // the temporary directory is only used to sort the words while building
+        this.completions = new AnalyzingSuggester(new ByteBuffersDirectory(), "completions", KEYS);
+        this.corrections = new FuzzySuggester(new ByteBuffersDirectory(), "corrections", KEYS);
+    }
+
+    // the words field of a file, analyzed by the analyzer returned by wrap
+    static Field wordsField(String text) {
+        return new Field(FIELD, text, WORDS_TYPE);
+    }
+
+    // the analyzer of the index writers : the words field is analyzed apart, the others by the analyzer
+    static Analyzer wrap(Analyzer analyzer) {
+        return new PerFieldAnalyzerWrapper(analyzer, Collections.singletonMap(FIELD, WORDS));
+    }
+
+    static Path path(Path index) {
+        return index.resolveSibling(index.getFileName() + "-suggest.fst");
+    }
+
+    // build the suggestions from the vocabulary of the indexes being written, and save them next to the index
+    static void build(Path index, IndexWriter... writers) throws IOException {
+        long start = System.currentTimeMillis();
+        IndexReader[] readers = new IndexReader[writers.length];
+        for (int i = 0; i < writers.length; i++) {
+            readers[i] = DirectoryReader.open(writers[i]);
+        }
+        Suggestions suggestions = new Suggestions();
+        try (MultiReader reader = new MultiReader(readers)) {
+            if (MultiTerms.getTerms(reader, FIELD) == null) {
+                System.out.println("WARNING : the index has no " + FIELD + " field, no suggestions are built");
+                return;
+            }
+            suggestions.completions.build(new HighFrequencyDictionary(reader, FIELD, 0f));
+            suggestions.corrections.build(new HighFrequencyDictionary(reader, FIELD, 0f));
+        }
+
+        // written aside and moved, so a search server never loads half a file
+        Path file = path(index);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            OutputStreamDataOutput output = new OutputStreamDataOutput(out);
+            suggestions.completions.store(output);
+            suggestions.corrections.store(output);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("--- suggestions of " + suggestions.completions.getCount() + " words built in "
+                + (System.currentTimeMillis() - start) + " ms, saved in " + file + " (" + Files.size(file) / 1024 + " KB)");
+    }
+
+    // null when they were not built
+    static Suggestions load(Path index) throws IOException {
+        Path file = path(index);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Suggestions suggestions = new Suggestions();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            InputStreamDataInput input = new InputStreamDataInput(in);
+            suggestions.completions.load(input);
+            suggestions.corrections.load(input);
+        }
+        return suggestions;
+    }
+
+    // the most frequent words starting with the prefix, diacritics or not
+    // the less frequent spellings of a word (without diacritics, or with the old cedilla ones) are left out
+    List<String> complete(String prefix, int k) throws IOException {
+        k = Math.min(k, MAX_COMPLETIONS);
+        List<String> words = new ArrayList<>();
+        Set<String> folded = new HashSet<>();
+        for (String word : keys(completions.lookup(prefix, false, 3 * k))) {
+            if (folded.add(fold(word)) && words.size() < k) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // the most frequent words within one typo of the word (or of its beginning)
+    List<String> correct(String word, int k) throws IOException {
+        return keys(corrections.lookup(word, false, k));
+    }
+
+    // the query with each unknown word replaced by its closest correction, null when there is none
+    String didYouMean(String query) throws IOException {
+        StringBuilder corrected = new StringBuilder();
+        boolean changed = false;
+        for (String word : query.trim().split("\\s+")) {
+            String replacement = closest(word);
+            changed |= !replacement.equals(word);
+            corrected.append(corrected.length() == 0 ? "" : " ").append(replacement);
+        }
+        return changed ? corrected.toString() : null;
+    }
+
+    // the corrections also match longer words starting like the word :
+    // the closest one to the whole word is taken, the most frequent one among the closest
+    private String closest(String word) throws IOException {
+        String folded = fold(word);
+        // stopwords and short words are not in the vocabulary
+        if (folded.length() < 3 || STOPWORDS.contains(folded)) {
+            return word;
+        }
+        String closest = word;
+        float closestSimilarity = 0;
+        for (String candidate : correct(word, 10)) {
+            String foldedCandidate = fold(candidate);
+            if (foldedCandidate.equals(folded)) {
+                // a known word
+                return word;
+            }
+            float similarity = DISTANCE.getDistance(folded, foldedCandidate);
+            if (similarity > closestSimilarity) {
+                closest = candidate;
+                closestSimilarity = similarity;
+            }
+        }
+        return closest;
+    }
+
+    private static String fold(String word) {
+        return Normalizer.normalize(word.toLowerCase(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+
+    long ramBytesUsed() {
+        return completions.ramBytesUsed() + corrections.ramBytesUsed();
+    }
+
+    private static List<String> keys(List<Lookup.LookupResult> results) {
+        List<String> keys = new ArrayList<>(results.size());
+        for (Lookup.LookupResult result : results) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,243 @@
+package romanian.indexer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// on disk cache of the text extracted by Tika, keyed by the content hash of the source file
+// rebuilding the index with a different analyzer then only re-tokenizes the cached text
+//
+// one file per entry, under a two letters sub directory : <hash[0..2]>/<hash>.txtz
+// entry format : magic (4 bytes), character limit the text was cut at (int, 0 : the whole text),
+// text length in bytes (int), deflate compressed UTF-8 text
+// an entry extracted under another indexer.maxChars than the current one is a miss, the text is extracted again
+// entries are memory mapped when read
+// when the cache grows over its maximum size, the least recently used entries are deleted
+class TextCache {
+
+    private static final int MAGIC = 0x52544332; // "RTC2"
+    // the entries without the character limit, extracted again
+    private static final int MAGIC_V1 = 0x52544331; // "RTC1"
+    private static final String EXTENSION = ".txtz";
+
+    private final Path root;
+    private final long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    TextCache(Path root, long maxBytes) throws IOException {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(root);
+        for (Path entry : entries()) {
+            totalBytes.addAndGet(Files.size(entry));
+        }
+    }
+
+    // returns null when the text is not cached, or not as it would be extracted with this character limit :
+    // cut at another limit, or longer than the limit.
+    // an entry that can't be read is deleted and is a miss too : the cache never fails the indexing of a file
+    String get(String hash, int limit) {
+        Path entry = entryPath(hash);
+        try {
+            String text = read(entry, limit);
+            if (text == null) {
+                misses.increment();
+                return null;
+            }
+            touch(entry);
+            hits.increment();
+            return text;
+        } catch (NoSuchFileException ex) {
+            misses.increment();
+            return null;
+        } catch (IOException ex) {
+            System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at reading text cache entry " + entry + " (" + ex.getMessage() + "). Deleting it.");
+            delete(entry);
+            misses.increment();
+            return null;
+        }
+    }
+
+    private String read(Path entry, int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 4) {
+                throw new IOException("truncated header");
+            }
+            int magic = buffer.getInt();
+            if (magic == MAGIC_V1) {
+                // an entry of the previous format, replaced by the next put
+                return null;
+            }
+            if (magic != MAGIC || buffer.remaining() < 8) {
+                throw new IOException("bad header");
+            }
+            int cutAt = buffer.getInt();
+            int length = buffer.getInt();
+            if (cutAt != 0 && cutAt != limit) {
+                return null;
+            }
+            // checked before allocating : a UTF-8 char takes at most 3 bytes, and deflate compresses at most 1032 times
+            if (length < 0 || (long) length > 1032L * buffer.remaining() + 64) {
+                throw new IOException("bad text length " + length);
+            }
+            if ((long) length > 3L * limit) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteBufferInputStream(buffer)))) {
+                in.readFully(bytes);
+            }
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            if (text.length() >= limit && cutAt != limit) {
+                return null;
+            }
+            return text;
+        }
+    }
+
+    private void delete(Path entry) {
+        try {
+            long size = Files.size(entry);
+            if (Files.deleteIfExists(entry)) {
+                totalBytes.addAndGet(-size);
+            }
+        } catch (IOException ignore) {
+            // deleted meanwhile, or replaced by the next put
+        }
+    }
+
+    // the modification time is the last access time used by the eviction
+    private void touch(Path entry) throws IOException {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException ignore) {
+            // evicted meanwhile, the text was already read
+        }
+    }
+
+    // the text extracted with this character limit, cut at it when it has as many characters
+    void put(String hash, String text, int limit) throws IOException {
+        Path entry = entryPath(hash);
+        Files.createDirectories(entry.getParent());
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        // write to a temporary file first, so concurrent readers never see a partial entry
+        Path temp = Files.createTempFile(entry.getParent(), hash, ".tmp");
+        // the native memory of the deflater is only freed by end(), the stream does not own it
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(text.length() >= limit ? limit : 0);
+            out.writeInt(bytes.length);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater);
+            compressed.write(bytes);
+            compressed.finish();
+        } finally {
+            deflater.end();
+        }
+        long size = Files.size(temp);
+        // the size of the entry replaced is already counted
+        long replaced;
+        try {
+            replaced = Files.size(entry);
+        } catch (NoSuchFileException ex) {
+            replaced = 0;
+        }
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (totalBytes.addAndGet(size - replaced) > maxBytes) {
+            evict();
+        }
+    }
+
+    // delete the least recently used entries until the cache is back to 90% of its maximum size
+    private synchronized void evict() throws IOException {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Path> entries = entries();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        for (Path entry : entries) {
+            attributes.add(Files.readAttributes(entry, BasicFileAttributes.class));
+        }
+        List<Integer> order = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+            total += attributes.get(i).size();
+        }
+        order.sort((a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+
+        long target = maxBytes / 10 * 9;
+        for (int i : order) {
+            if (total <= target) {
+                break;
+            }
+            if (Files.deleteIfExists(entries.get(i))) {
+                total -= attributes.get(i).size();
+                evictions.increment();
+            }
+        }
+        totalBytes.set(total);
+    }
+
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).forEach(entries::add);
+        }
+        return entries;
+    }
+
+    private Path entryPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash + EXTENSION);
+    }
+
+    void report() {
+        System.out.println(String.format("--- text cache : %d hits, %d misses, %d evictions, %d MB on disk",
+                hits.sum(), misses.sum(), evictions.sum(), totalBytes.get() / (1024 * 1024)));
+    }
+
+    // reads a (memory mapped) buffer as a stream
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
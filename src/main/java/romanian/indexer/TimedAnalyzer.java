@@ -0,0 +1,67 @@
+package romanian.indexer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.AnalyzerWrapper;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+
+import java.io.IOException;
+
+// measures the time spent in the analysis chain, per field value (indexer.analysis.ns) and the tokens produced
+// Lucene interleaves the analysis with the inversion of the tokens, so only the time inside the chain is counted
+class TimedAnalyzer extends AnalyzerWrapper {
+
+    private final Analyzer delegate;
+
+    TimedAnalyzer(Analyzer delegate) {
+        super(delegate.getReuseStrategy());
+        this.delegate = delegate;
+    }
+
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        return delegate;
+    }
+
+    @Override
+    protected TokenStreamComponents wrapComponents(String fieldName, TokenStreamComponents components) {
+        return new TokenStreamComponents(components.getSource(), new TimingFilter(components.getTokenStream()));
+    }
+
+    // the components are reused by a single thread at a time, so the sums need no synchronization
+    private static final class TimingFilter extends TokenFilter {
+
+        private long nanos;
+        private long tokens;
+
+        TimingFilter(TokenStream input) {
+            super(input);
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            long start = System.nanoTime();
+            boolean hasToken = input.incrementToken();
+            nanos += System.nanoTime() - start;
+            if (hasToken) {
+                tokens++;
+            }
+            return hasToken;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            long start = System.nanoTime();
+            super.reset();
+            nanos = System.nanoTime() - start;
+            tokens = 0;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            Metrics.histogram("indexer.analysis.ns").record(nanos);
+            Metrics.counter("indexer.tokens").add(tokens);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package romanian.indexer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// daemon mode of the Indexer (indexer.watch) : after the first run, the docs tree is watched for changes
+// instead of being walked again
+// the events of a file are debounced : it is indexed or deleted once no event came for indexer.watchDebounceMs,
+// so a file being copied or saved in several writes is parsed once.
+// the settled files are applied in batches and committed after indexer.commitMs or indexer.commitDocs changes,
+// whichever comes first, then the search server sees them at its next refresh.
+// a file that fails is applied again after the debounce delay, until indexer.maxAttempts, as counted by the Checkpoint
+// of the docs tree, which records the failures with the commits
+class Watcher {
+
+    static boolean enabled = Boolean.getBoolean("indexer.watch");
+    static long debounceMillis = Long.getLong("indexer.watchDebounceMs", 500);
+    static long commitMillis = Long.getLong("indexer.commitMs", 1000);
+    static int commitDocs = Integer.getInteger("indexer.commitDocs", 1000);
+
+    private final Indexer indexer;
+    private final Path root;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    // path -> time of its last event, oldest event first
+    private final LinkedHashMap<Path, Long> pending = new LinkedHashMap<>();
+    // times of the last events of the changes not committed yet
+    private final List<Long> uncommitted = new ArrayList<>();
+    private Checkpoint checkpoint;
+    private long indexed;
+    private long failed;
+    private volatile boolean stopped;
+
+    Watcher(Indexer indexer, Path root) throws IOException {
+        this.indexer = indexer;
+        this.root = root;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.checkpoint = indexer.checkpoint(root);
+    }
+
+    // returns after stop(), with the changes committed
+    void run() throws IOException {
+        try {
+            register(root);
+            System.out.println("--- watching " + root + " for changes");
+            long pollMillis = Math.max(10, Math.min(debounceMillis, commitMillis) / 2);
+            while (!stopped) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= handle(key);
+                    key = watchService.poll();
+                }
+                if (overflow) {
+                    // events were lost, only a walk can tell what changed
+                    System.out.println("WARNING : too many file system events, rescanning " + root);
+                    pending.clear();
+                    // the walk starts from the failures committed so far, and records its own
+                    commit();
+                    indexer.indexDocs(root);
+                    checkpoint = indexer.checkpoint(root);
+                    uncommitted.add(System.nanoTime());
+                }
+                applySettled();
+                long now = System.nanoTime();
+                if (!uncommitted.isEmpty() && (uncommitted.size() >= commitDocs
+                        || TimeUnit.NANOSECONDS.toMillis(now - uncommitted.get(0)) >= commitMillis)) {
+                    commit();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watchService.close();
+        }
+        commit();
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    // register the directory and its sub directories
+    private void register(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // true when events were lost
+    private boolean handle(WatchKey key) throws IOException {
+        Path dir = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Metrics.counter("watcher.events").increment();
+            Path path = dir.resolve((Path) event.context());
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (event.kind() == ENTRY_CREATE) {
+                    // files can be created in it before it is registered
+                    register(path);
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.filter(Files::isRegularFile).forEach(this::changed);
+                    }
+                }
+                continue;
+            }
+            changed(path);
+        }
+        if (!key.reset()) {
+            // the directory was deleted, its files are removed by the event of its parent
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void changed(Path path) {
+        pending.remove(path);
+        pending.put(path, System.nanoTime());
+    }
+
+    // index or delete the files without events for debounceMillis
+    private void applySettled() throws IOException {
+        long now = System.nanoTime();
+        List<Path> retries = new ArrayList<>();
+        Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Long> entry = entries.next();
+            if (TimeUnit.NANOSECONDS.toMillis(now - entry.getValue()) < debounceMillis) {
+                // the next ones are more recent
+                break;
+            }
+            entries.remove();
+            if (!apply(entry.getKey())) {
+                retries.add(entry.getKey());
+            }
+            uncommitted.add(entry.getValue());
+        }
+        // debounced again, as if they just changed
+        retries.forEach(this::changed);
+    }
+
+    // false when the file failed and has attempts left
+    private boolean apply(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            SourceFile file = null;
+            try {
+                file = SourceFile.read(path);
+                if (checkpoint.gaveUp(file)) {
+                    return true;
+                }
+                indexer.indexDoc(file);
+                checkpoint.succeeded(path);
+                indexed++;
+                Metrics.counter("watcher.indexed").increment();
+            } catch (Throwable ex) {
+                // don't index files that can't be read, apply them again later while they have attempts left
+                // an Error of a parser (out of memory, stack overflow) fails the file too, instead of stopping the watch
+                int attempts = checkpoint.failed(path, file == null ? -1 : file.lastModified);
+                boolean retry = attempts < Checkpoint.maxAttempts;
+                System.out.println("WARNING : " + ex.getClass().getSimpleName() + " at reading file " + path + " (" + ex.getMessage() + "). "
+                        + (retry ? "Retrying it later (attempt " + attempts + " of " + Checkpoint.maxAttempts + ")." : "Skipping it."));
+                if (retry) {
+                    return false;
+                }
+                failed++;
+            }
+        } else if (!Files.exists(path)) {
+            if (Indexer.verbose) {
+                System.out.println("--- deleting from index " + path);
+            }
+            indexer.deleteDocs(path.toString());
+            Metrics.counter("watcher.deleted").increment();
+        }
+        return true;
+    }
+
+    private void commit() throws IOException {
+        if (uncommitted.isEmpty()) {
+            return;
+        }
+        // with the failed files, so a restart does not parse again the ones given up
+        checkpoint.commit(indexed, 0, failed, true);
+        long now = System.nanoTime();
+        // from the last event of each file to the commit making it searchable
+        for (long eventNanos : uncommitted) {
+            Metrics.histogram("watcher.latency.ns").record(now - eventNanos);
+        }
+        System.out.println("--- committed " + uncommitted.size() + " changes, "
+                + TimeUnit.NANOSECONDS.toMillis(now - uncommitted.get(0)) + " ms after the oldest one");
+        uncommitted.clear();
+    }
+}
@@ -0,0 +1,81 @@
+package romanian.indexer;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.util.InfoStream;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// flush and merge statistics of the index writers
+// Lucene 8 has no flush listener : the flushes are read from the "DWPT" messages of the info stream,
+// the merges are timed around ConcurrentMergeScheduler.doMerge
+class WriterMetrics {
+
+    private WriterMetrics() {
+    }
+
+    static IndexWriterConfig attach(IndexWriterConfig config) {
+        config.setInfoStream(new FlushInfoStream());
+        config.setMergeScheduler(new TimedMergeScheduler());
+        return config;
+    }
+
+    static void report() {
+        Histogram flushes = Metrics.histogram("writer.flush.ns");
+        Histogram merges = Metrics.histogram("writer.merge.ns");
+        long flushedDocs = Metrics.counter("writer.flush.docs").sum();
+        long mergedBytes = Metrics.counter("writer.merge.bytes").sum();
+        // throughput while flushing or merging, summed over the threads
+        double flushSeconds = flushes.mean() * flushes.count() / 1e9;
+        double mergeSeconds = merges.mean() * merges.count() / 1e9;
+        System.out.println(String.format("--- flushes : %d (%.1f ms on average, %d docs, %.0f docs/sec), merges : %d (%.1f ms on average, %d docs, %d MB, %.1f MB/sec)",
+                flushes.count(), flushes.mean() / 1e6, flushedDocs, flushSeconds > 0 ? flushedDocs / flushSeconds : 0,
+                merges.count(), merges.mean() / 1e6, Metrics.counter("writer.merge.docs").sum(),
+                mergedBytes >> 20, mergeSeconds > 0 ? mergedBytes / mergeSeconds / (1 << 20) : 0));
+    }
+
+    private static final class FlushInfoStream extends InfoStream {
+
+        private static final Pattern FLUSH_DOCS = Pattern.compile("^flush postings as segment \\S+ numDocs=(\\d+)");
+        private static final Pattern FLUSH_TIME = Pattern.compile("^flush time ([0-9.]+) msec");
+
+        @Override
+        public void message(String component, String message) {
+            Matcher docs = FLUSH_DOCS.matcher(message);
+            if (docs.find()) {
+                Metrics.counter("writer.flush.docs").add(Long.parseLong(docs.group(1)));
+                return;
+            }
+            Matcher time = FLUSH_TIME.matcher(message);
+            if (time.find()) {
+                Metrics.histogram("writer.flush.ns").record((long) (Double.parseDouble(time.group(1)) * 1e6));
+            }
+        }
+
+        // only the messages of the per thread writers, the others are not even built
+        @Override
+        public boolean isEnabled(String component) {
+            return "DWPT".equals(component);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class TimedMergeScheduler extends ConcurrentMergeScheduler {
+
+        @Override
+        protected void doMerge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
+            long start = System.nanoTime();
+            super.doMerge(writer, merge);
+            Metrics.histogram("writer.merge.ns").record(System.nanoTime() - start);
+            Metrics.counter("writer.merge.docs").add(merge.totalMaxDoc);
+            Metrics.counter("writer.merge.bytes").add(merge.totalBytesSize());
+        }
+    }
+}